@@ -27,9 +27,14 @@ CREATE TABLE dm.chunks (
     title_name VARCHAR(255) NOT NULL, -- название заголовка
 	source_url VARCHAR(255) DEFAULT NULL, --крч здесь текстом указана страница и тд в файле, вытащить изображение не нада!
     content TEXT NOT NULL,             --текст чанка
-	created_at TIMESTAMP WITH TIME ZONE --время создания 
+	created_at TIMESTAMP WITH TIME ZONE, --время создания 
+	content_tsv TSVECTOR GENERATED ALWAYS AS (to_tsvector('russian', content)) STORED -- лексемы для полнотекстового поиска
 );
 
+-- Полнотекстовый индекс по содержимому чанков (гибридный поиск)
+CREATE INDEX IF NOT EXISTS idx_chunks_content_tsv
+	ON dm.chunks USING gin (content_tsv);
+
 
 
 
@@ -39,8 +44,35 @@ CREATE TABLE dm.chunks_vectors(
 	PRIMARY KEY(chunk_id)
 );
 
+-- ANN-индекс для поиска по косинусному расстоянию (embedding <=> ?)
+CREATE INDEX IF NOT EXISTS idx_chunks_vectors_embedding_hnsw
+	ON dm.chunks_vectors USING hnsw (embedding vector_cosine_ops)
+	WITH (m = 16, ef_construction = 64);
+
 --drop table if exists dm.chunks_vectors;
 
+-- Кэш эмбеддингов: ключ - модель + SHA-256 нормализованного текста
+CREATE TABLE IF NOT EXISTS dm.embedding_cache(
+	model_uri VARCHAR(255) NOT NULL, --модель, которой посчитан вектор
+	text_hash CHAR(64) NOT NULL, --хэш текста
+	embedding VECTOR NOT NULL,
+	created_at TIMESTAMP WITH TIME ZONE DEFAULT now(),
+	PRIMARY KEY(model_uri, text_hash)
+);
+
+-- Контрольные точки фоновых заданий (заполнение эмбеддингов и т.д.)
+CREATE TABLE IF NOT EXISTS dm.backfill_checkpoints(
+	job_name VARCHAR(100) PRIMARY KEY, --название задания
+	last_chunk_id BIGINT NOT NULL, --последний обработанный чанк
+	updated_at TIMESTAMP WITH TIME ZONE DEFAULT now()
+);
+
+-- Чанки, сохранённые после последней успешной разметки тегами и эмбеддинга
+CREATE TABLE IF NOT EXISTS dm.chunk_ingestion_pending(
+	chunk_id INTEGER PRIMARY KEY REFERENCES dm.chunks(id) ON DELETE CASCADE, --чанк, ожидающий обработки
+	marked_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now() --время последнего сохранения
+);
+
 -- Теги для категоризации
 CREATE TABLE dm.tags (
     id SERIAL PRIMARY KEY,
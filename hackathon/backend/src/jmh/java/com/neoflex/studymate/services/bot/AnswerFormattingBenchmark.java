@@ -0,0 +1,60 @@
+package com.neoflex.studymate.services.bot;
+
+import com.neoflex.studymate.dto.ChunkCard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the reply text: material locations, MarkdownV2 escaping and splitting into Telegram-sized messages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnswerFormattingBenchmark {
+
+    private List<ChunkCard> chunks;
+    private String answer;
+    private String longAnswer;
+
+    @Setup
+    public void setUp() {
+        chunks = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            chunks.add(new ChunkCard((long) i, "Раздел " + i, "https://docs.example.org/course-" + (i % 3) + "/section-" + i + ".html",
+                    "Лекция " + (i % 5) + ".pdf", "Базы данных " + (i % 3), "Содержимое раздела " + i));
+        }
+        answer = "Индекс (B-дерево) ускоряет поиск: O(log n) вместо O(n)! См. раздел 2.1 — \"Индексы\".\n".repeat(10)
+                + BotService.formatChunksAnswer(chunks);
+        longAnswer = answer.repeat(8);
+    }
+
+    @Benchmark
+    public String formatChunksAnswer() {
+        return BotService.formatChunksAnswer(chunks);
+    }
+
+    @Benchmark
+    public String escapeMarkdownV2() {
+        return MarkdownV2.escape(answer);
+    }
+
+    @Benchmark
+    public List<String> splitLongAnswer() {
+        return MarkdownV2.split(longAnswer, MarkdownV2.MAX_MESSAGE_LENGTH);
+    }
+}
@@ -0,0 +1,61 @@
+package com.neoflex.studymate.services.chunk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * pgvector text encoding of a 256-dimension embedding, as written by the batch insert and read back on index load,
+ * against the binary COPY row written by {@link VectorCopyWriter}. Run with {@code -prof gc} to compare allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorSerializationBenchmark {
+
+    private float[] vector;
+    private String text;
+    private ByteBuffer copyBuffer;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(3);
+        vector = new float[256];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = (float) random.nextGaussian() / 16;
+        }
+        text = EmbeddingService.vectorToString(vector);
+        copyBuffer = ByteBuffer.allocate(VectorCopyWriter.rowSize(vector.length));
+    }
+
+    @Benchmark
+    public String vectorToString() {
+        return EmbeddingService.vectorToString(vector);
+    }
+
+    @Benchmark
+    public ByteBuffer binaryCopyRow() {
+        copyBuffer.clear();
+        VectorCopyWriter.encodeRow(copyBuffer, 42, vector);
+        return copyBuffer;
+    }
+
+    @Benchmark
+    public float[] parseVector() {
+        return EmbeddingService.parseVector(text);
+    }
+}
@@ -0,0 +1,77 @@
+package com.neoflex.studymate.services.search;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Top-k selection over a corpus of 256-dimension embeddings: exact scan versus HNSW graph search.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorSearchBenchmark {
+
+    private static final int DIMENSION = 256;
+
+    @Param({"1000", "10000", "50000"})
+    private int corpusSize;
+
+    @Param({"false", "true"})
+    private boolean quantized;
+
+    private HnswIndex index;
+    private float[][] queries;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(7);
+        index = new HnswIndex(DIMENSION, 16, 100, 64, quantized);
+        for (int i = 0; i < corpusSize; i++) {
+            index.add(i + 1, randomVector(random));
+        }
+        queries = new float[64][];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = randomVector(random);
+        }
+    }
+
+    @Benchmark
+    public List<ScoredChunk> exactTopK() {
+        return index.bruteForce(nextQuery(), VectorDbService.TOP_K);
+    }
+
+    @Benchmark
+    public List<ScoredChunk> hnswTopK() {
+        return index.search(nextQuery(), VectorDbService.TOP_K, id -> true);
+    }
+
+    private float[] nextQuery() {
+        next = (next + 1) % queries.length;
+        return queries[next];
+    }
+
+    private static float[] randomVector(SplittableRandom random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
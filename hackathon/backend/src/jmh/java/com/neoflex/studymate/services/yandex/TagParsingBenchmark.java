@@ -0,0 +1,40 @@
+package com.neoflex.studymate.services.yandex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Normalization of the model's keyword response in {@link YandexGptService#extractTags}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TagParsingBenchmark {
+
+    private final String shortResponse = "Индекс, B-дерево, транзакция, PostgreSQL.";
+    private final String longResponse = ("Ключевые слова: индекс, кластерный индекс, B-дерево, хеш-таблица, план запроса, "
+            + "транзакция, уровень изоляции, блокировка, MVCC, вакуум, статистика, селективность.\n").repeat(8);
+
+    @Benchmark
+    public List<String> shortResponse() {
+        return YandexGptService.normalizeTags(shortResponse);
+    }
+
+    @Benchmark
+    public List<String> longResponse() {
+        return YandexGptService.normalizeTags(longResponse);
+    }
+}
@@ -0,0 +1,67 @@
+package com.neoflex.studymate.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cosine similarity kernels on 256-dimension vectors; run with {@code -jvmArgsAppend -Dstudymate.vector.simd=false}
+ * to measure the scalar fallback.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorMathBenchmark {
+
+    @Param({"256"})
+    private int dimension;
+
+    private float[] a;
+    private float[] b;
+    private byte[] codesA;
+    private byte[] codesB;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(11);
+        a = new float[dimension];
+        b = new float[dimension];
+        codesA = new byte[dimension];
+        codesB = new byte[dimension];
+        for (int i = 0; i < dimension; i++) {
+            a[i] = (float) random.nextGaussian();
+            b[i] = (float) random.nextGaussian();
+            codesA[i] = (byte) random.nextInt(-127, 128);
+            codesB[i] = (byte) random.nextInt(-127, 128);
+        }
+    }
+
+    @Benchmark
+    public float dotFloat() {
+        return VectorMath.dot(a, b);
+    }
+
+    @Benchmark
+    public float dotFloatInt8() {
+        return VectorMath.dot(a, codesB, 0, dimension);
+    }
+
+    @Benchmark
+    public int dotInt8() {
+        return VectorMath.dot(codesA, 0, codesB, 0, dimension);
+    }
+}
@@ -0,0 +1,16 @@
+package com.neoflex.studymate.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class AsyncConfig {
+
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService botPipelineExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("bot-pipeline-", 0).factory());
+    }
+}
@@ -0,0 +1,126 @@
+package com.neoflex.studymate.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * One pooled Apache HttpClient per outbound endpoint, each with its own timeouts, pool size and metrics:
+ * pool gauges ({@code httpcomponents.httpclient.pool.*}) and time to first byte ({@code http.client.ttfb}),
+ * both tagged with the endpoint name.
+ */
+@Slf4j
+@Configuration
+public class HttpClientConfig {
+
+    private final List<CloseableHttpClient> clients = new CopyOnWriteArrayList<>();
+
+    @Bean
+    public RestTemplate yandexCompletionRestTemplate(MeterRegistry meterRegistry,
+                                                     @Value("${app.http.yandex-completion.connect-timeout}") Duration connectTimeout,
+                                                     @Value("${app.http.yandex-completion.read-timeout}") Duration readTimeout,
+                                                     @Value("${app.http.yandex-completion.max-connections}") int maxConnections) {
+        return register("yandex-completion", connectTimeout, readTimeout, maxConnections, meterRegistry);
+    }
+
+    @Bean
+    public RestTemplate yandexEmbeddingRestTemplate(MeterRegistry meterRegistry,
+                                                    @Value("${app.http.yandex-embedding.connect-timeout}") Duration connectTimeout,
+                                                    @Value("${app.http.yandex-embedding.read-timeout}") Duration readTimeout,
+                                                    @Value("${app.http.yandex-embedding.max-connections}") int maxConnections) {
+        return register("yandex-embedding", connectTimeout, readTimeout, maxConnections, meterRegistry);
+    }
+
+    @Bean
+    public RestTemplate telegramRestTemplate(MeterRegistry meterRegistry,
+                                             @Value("${app.http.telegram.connect-timeout}") Duration connectTimeout,
+                                             @Value("${app.http.telegram.read-timeout}") Duration readTimeout,
+                                             @Value("${app.http.telegram.max-connections}") int maxConnections) {
+        return register("telegram", connectTimeout, readTimeout, maxConnections, meterRegistry);
+    }
+
+    private static CloseableHttpClient pooledHttpClient(String endpoint, Duration connectTimeout, Duration readTimeout,
+                                                        int maxConnections, MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                        .setTimeToLive(TimeValue.ofMinutes(5))
+                        .build())
+                .build();
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, endpoint).bindTo(meterRegistry);
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(connectTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .build())
+                .evictIdleConnections(TimeValue.ofSeconds(30))
+                .build();
+    }
+
+    private static RestTemplate instrumentedRestTemplate(String endpoint, CloseableHttpClient httpClient,
+                                                         MeterRegistry meterRegistry) {
+        RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+        restTemplate.getInterceptors().add((request, body, execution) -> {
+            long start = System.nanoTime();
+            String outcome = "error";
+            try {
+                ClientHttpResponse response = execution.execute(request, body);
+                outcome = response.getStatusCode().is2xxSuccessful() ? "success" : String.valueOf(response.getStatusCode().value());
+                return response;
+            } finally {
+                Timer.builder("http.client.ttfb")
+                        .description("Time until response headers of an outbound request are received")
+                        .tag("endpoint", endpoint)
+                        .tag("outcome", outcome)
+                        .register(meterRegistry)
+                        .record(Duration.ofNanos(System.nanoTime() - start));
+            }
+        });
+        return restTemplate;
+    }
+
+    RestTemplate register(String endpoint, Duration connectTimeout, Duration readTimeout,
+                          int maxConnections, MeterRegistry meterRegistry) {
+        CloseableHttpClient client = pooledHttpClient(endpoint, connectTimeout, readTimeout, maxConnections, meterRegistry);
+        clients.add(client);
+        return instrumentedRestTemplate(endpoint, client, meterRegistry);
+    }
+
+    @PreDestroy
+    public void closeClients() {
+        for (CloseableHttpClient client : clients) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                log.warn("Failed to close HTTP client: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.neoflex.studymate.controllers;
 
 import com.neoflex.studymate.services.bot.BotService;
+import com.neoflex.studymate.services.bot.TelegramDeliveryQueue;
 import com.neoflex.studymate.services.bot.TelegramService;
+import com.neoflex.studymate.services.bot.UpdateDispatcher;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -26,17 +28,19 @@ public class BotController {
 
     private final BotService botService;
     private final TelegramService telegramService;
+    private final UpdateDispatcher updateDispatcher;
 
     @Operation(
             summary = "Обработка вебхука от Telegram",
-            description = "Принимает и обрабатывает входящие сообщения от Telegram бота",
+            description = "Принимает входящие сообщения от Telegram бота и ставит их в очередь на обработку",
             responses = {
-                    @ApiResponse(responseCode = "200", description = "Сообщение успешно обработано"),
+                    @ApiResponse(responseCode = "200", description = "Сообщение принято в обработку"),
             }
     )
     @PostMapping("/webhook")
     public ResponseEntity<Void> onUpdate(@RequestBody Map<String, Object> update) {
         try {
+            Long updateId = update.get("update_id") instanceof Number id ? id.longValue() : null;
             Map<String, Object> message = (Map<String, Object>) update.get("message");
             if (message != null) {
                 Map<String, Object> chat = (Map<String, Object>) message.get("chat");
@@ -44,11 +48,14 @@ public class BotController {
                 String text = (String) message.get("text");
 
                 if (text != null && !text.isBlank()) {
-                    log.info("Received message from chat {}: {}", chatId, text);
-                    botService.handleUserMessage(chatId, text);
+                    log.info("Received message from chat {} ({} chars)", chatId, text.length());
+                    log.debug("Message text: {}", text);
+                    updateDispatcher.dispatch(updateId, chatId, () -> botService.handleUserMessage(chatId, text));
                 } else {
                     log.warn("Received non-text message from chat {}: {}", chatId, message);
-                    telegramService.sendMessage(chatId, "Извини, но я понимаю только текст");
+                    updateDispatcher.dispatch(updateId, chatId,
+                            () -> telegramService.sendMessage(chatId, "Извини, но я понимаю только текст",
+                                    TelegramDeliveryQueue.Priority.URGENT));
                 }
             } else {
                 log.warn("Received update without message: {}", update);
@@ -0,0 +1,77 @@
+package com.neoflex.studymate.controllers;
+
+import com.neoflex.studymate.services.chunk.BulkIngestionPipeline;
+import com.neoflex.studymate.services.chunk.ImportRejectedException;
+import com.neoflex.studymate.services.chunk.ImportJob;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.net.URI;
+
+@Slf4j
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/api/chunks")
+@Tag(name = "Chunk Import Controller", description = "Контроллер для массовой загрузки учебных материалов")
+public class ChunkImportController {
+
+    private final BulkIngestionPipeline bulkIngestionPipeline;
+
+    @Operation(
+            summary = "Загрузка чанков в формате NDJSON",
+            description = "Принимает поток строк {\"title\", \"url\", \"content\", \"fileId\"} и запускает их сохранение, " +
+                    "разметку тегами, получение эмбеддингов и индексацию. Возвращает идентификатор задачи сразу после загрузки файла",
+            responses = {
+                    @ApiResponse(responseCode = "202", description = "Файл принят, строки обрабатываются в фоне"),
+                    @ApiResponse(responseCode = "400", description = "Не указан fileId ни в параметре, ни в строках файла"),
+                    @ApiResponse(responseCode = "413", description = "Файл больше допустимого размера"),
+            }
+    )
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ImportJob.Progress> importChunks(
+            @Parameter(description = "Файл, к которому относятся чанки без собственного fileId")
+            @RequestParam(required = false) Long fileId,
+            HttpServletRequest request) throws IOException {
+        ImportJob job;
+        try {
+            job = bulkIngestionPipeline.importChunks(request.getInputStream(), fileId);
+        } catch (ImportRejectedException e) {
+            log.warn("Chunk import rejected: {}", e.getMessage());
+            throw new ResponseStatusException(e.reason() == ImportRejectedException.Reason.TOO_LARGE
+                    ? HttpStatus.PAYLOAD_TOO_LARGE : HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/chunks/import/" + job.id()))
+                .body(job.progress());
+    }
+
+    @Operation(
+            summary = "Прогресс загрузки чанков",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Текущее состояние задачи"),
+                    @ApiResponse(responseCode = "404", description = "Задача не найдена или устарела"),
+            }
+    )
+    @GetMapping("/import/{jobId}")
+    public ResponseEntity<ImportJob.Progress> importProgress(@PathVariable String jobId) {
+        return bulkIngestionPipeline.job(jobId)
+                .map(job -> ResponseEntity.ok(job.progress()))
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
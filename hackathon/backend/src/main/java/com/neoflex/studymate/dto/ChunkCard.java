@@ -0,0 +1,7 @@
+package com.neoflex.studymate.dto;
+
+/**
+ * Read-only view of a chunk with its file and course names, used to build answers without touching JPA entities.
+ */
+public record ChunkCard(Long id, String title, String url, String fileName, String courseName, String content) {
+}
@@ -0,0 +1,22 @@
+package com.neoflex.studymate.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * One line of an NDJSON chunk import; {@code fileId} overrides the file given for the whole upload.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ChunkImportLine {
+    private String title;
+    private String url;
+    private String content;
+    private Long fileId;
+}
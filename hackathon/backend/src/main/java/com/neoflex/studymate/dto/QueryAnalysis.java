@@ -0,0 +1,18 @@
+package com.neoflex.studymate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class QueryAnalysis {
+    private boolean study;
+    private boolean locationLookup;
+    private List<String> tags;
+}
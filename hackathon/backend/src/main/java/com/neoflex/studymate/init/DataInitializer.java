@@ -1,26 +1,103 @@
 package com.neoflex.studymate.init;
 
-import com.neoflex.studymate.services.chunk.EmbeddingService;
+import com.neoflex.studymate.services.chunk.BackfillProgress;
+import com.neoflex.studymate.services.chunk.ChunkIngestionPipeline;
 import com.neoflex.studymate.services.chunk.ChunkService;
+import com.neoflex.studymate.services.chunk.EmbeddingService;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
-import org.springframework.boot.CommandLineRunner;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
+/**
+ * Fills missing embeddings and tags in the background once the application is up, so the bot answers right away
+ * and search results improve as the backfills progress. Progress is reported by {@link InitializationHealthIndicator}.
+ */
+@Slf4j
 @Component
 @RequiredArgsConstructor
-public class DataInitializer implements CommandLineRunner {
+public class DataInitializer {
+
+    public enum State {
+        DISABLED,
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        /** Stopped by shutdown; resumes from the checkpoints on the next start. */
+        CANCELLED,
+        FAILED
+    }
 
     private final EmbeddingService embeddingService;
     private final ChunkService chunkService;
+    private final ChunkIngestionPipeline chunkIngestionPipeline;
+
+    private final BackfillProgress embeddings = new BackfillProgress();
+    private final BackfillProgress tagging = new BackfillProgress();
+
+    @Value("${app.init.enabled}")
+    private boolean enabled;
+
+    private volatile State state = State.PENDING;
+    private volatile String error;
+    private volatile Thread worker;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startInBackground() {
+        if (!enabled) {
+            state = State.DISABLED;
+            return;
+        }
+        worker = Thread.ofVirtual().name("data-init").start(this::run);
+    }
+
+    private void run() {
+        state = State.RUNNING;
+        long start = System.nanoTime();
+        log.info("Data initialization started in background");
+        try {
+            // chunks updated before a dropped ingestion still carry the embedding and tags of their old text
+            chunkIngestionPipeline.ingestPending();
+            // embeddings first: vector search depends on them, tags only add a ranking signal
+            embeddingService.fillChunkEmbeddings(embeddings);
+            chunkService.addTagsToEmptyChunks(tagging);
+            state = State.COMPLETED;
+            log.info("Data initialization completed in {} s", String.format("%.1f", (System.nanoTime() - start) / 1e9));
+        } catch (InterruptedException e) {
+            state = State.CANCELLED;
+            log.info("Data initialization cancelled after {} s", String.format("%.1f", (System.nanoTime() - start) / 1e9));
+        } catch (Exception e) {
+            error = e.getMessage();
+            state = State.FAILED;
+            log.error("Data initialization failed", e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread current = worker;
+        if (current != null && current.isAlive()) {
+            log.info("Stopping data initialization, it will resume from the saved checkpoints");
+            current.interrupt();
+        }
+    }
 
-    @Override
-    public void run(String... args) throws Exception {
-        System.out.println("Запуск инициализации данных...");
+    public State state() {
+        return state;
+    }
 
-        chunkService.addTagsToEmptyChunks();
+    public String error() {
+        return error;
+    }
 
-        embeddingService.fillChunkEmbeddings();
+    public BackfillProgress embeddings() {
+        return embeddings;
+    }
 
-        System.out.println("Инициализация данных завершена");
+    public BackfillProgress tagging() {
+        return tagging;
     }
 }
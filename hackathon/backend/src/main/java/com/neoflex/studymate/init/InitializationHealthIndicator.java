@@ -0,0 +1,48 @@
+package com.neoflex.studymate.init;
+
+import com.neoflex.studymate.services.chunk.BackfillProgress;
+import com.neoflex.studymate.services.search.HnswChunkRetriever;
+import com.neoflex.studymate.services.search.TagIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reports background initialization and index warm-up under {@code /actuator/health/initialization}.
+ * Always UP: the bot degrades to database search until the indexes are ready, so readiness is not held back.
+ * The details are only shown to authorized callers ({@code management.endpoint.health.show-details}).
+ */
+@Component
+@RequiredArgsConstructor
+public class InitializationHealthIndicator implements HealthIndicator {
+
+    private final DataInitializer dataInitializer;
+    private final TagIndex tagIndex;
+    private final HnswChunkRetriever hnswChunkRetriever;
+
+    @Override
+    public Health health() {
+        Health.Builder health = Health.up()
+                .withDetail("state", dataInitializer.state())
+                .withDetail("embeddings", progress(dataInitializer.embeddings()))
+                .withDetail("tagging", progress(dataInitializer.tagging()))
+                .withDetail("tagIndexReady", tagIndex.isAvailable())
+                .withDetail("vectorIndexReady", hnswChunkRetriever.isAvailable());
+        if (dataInitializer.error() != null) {
+            health.withDetail("error", dataInitializer.error());
+        }
+        return health.build();
+    }
+
+    private static Map<String, Object> progress(BackfillProgress progress) {
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("total", progress.total());
+        details.put("processed", progress.processed());
+        details.put("failed", progress.failed());
+        return details;
+    }
+}
@@ -10,6 +10,7 @@ import java.util.List;
 
 @Repository
 public interface ChunkRepository extends JpaRepository<Chunk, Long> {
-    @Query("SELECT p FROM Chunk p JOIN p.tags k WHERE LOWER(k.name) IN :tags")
+    @Query("SELECT p FROM Chunk p LEFT JOIN FETCH p.downloadedFile f LEFT JOIN FETCH f.course " +
+            "JOIN p.tags k WHERE LOWER(k.name) IN :tags")
     List<Chunk> findByTagsIgnoreCase(@Param("tags") List<String> tags);
 }
\ No newline at end of file
@@ -1,13 +1,20 @@
 package com.neoflex.studymate.services.bot;
 
+import com.neoflex.studymate.dto.ChunkCard;
 import com.neoflex.studymate.dto.ExternalLink;
-import com.neoflex.studymate.entities.Chunk;
-import com.neoflex.studymate.services.chunk.ChunkService;
+import com.neoflex.studymate.dto.QueryAnalysis;
 import com.neoflex.studymate.services.search.ExternalSearchService;
+import com.neoflex.studymate.services.search.HybridSearchService;
 import com.neoflex.studymate.services.search.VectorDbService;
+import com.neoflex.studymate.services.yandex.UpstreamUnavailableException;
 import com.neoflex.studymate.services.yandex.YandexGptService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.net.URI;
@@ -15,6 +22,12 @@ import java.net.URISyntaxException;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -26,54 +39,118 @@ public class BotService {
     private final ExternalSearchService externalSearchService;
     private final YandexGptService yandexGptService;
     private final TelegramService telegramService;
-    private final ChunkService chunkService;
+    private final HybridSearchService hybridSearchService;
+    private final SemanticAnswerCache semanticAnswerCache;
+    private final ExecutorService botPipelineExecutor;
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
 
     private static final int MAX_MESSAGE_LENGTH = 254;
+    private static final String DEGRADED_ANSWER = "Сейчас я не могу сформулировать ответ\uD83D\uDE14 " +
+            "Но вот где в учебных материалах есть информация по твоему вопросу:";
 
+    @Value("${app.bot.streaming.enabled}")
+    private boolean streamingEnabled;
+
+    /**
+     * Handles one update inside a {@code bot.update} observation (a timer, and a span when a tracing bridge is present),
+     * tagged with how the update ended; each pipeline stage is timed as {@code bot.stage}.
+     */
     public void handleUserMessage(Long chatId, String query) {
+        Observation observation = Observation.createNotStarted("bot.update", observationRegistry)
+                .lowCardinalityKeyValue("outcome", "unknown");
+        observation.observe(() -> handleUserMessage(chatId, query, observation));
+    }
+
+    private void handleUserMessage(Long chatId, String query, Observation observation) {
+        List<CompletableFuture<?>> speculative = List.of();
+        StreamingReply reply = null;
         try {
             if (query.length() > MAX_MESSAGE_LENGTH) {
                 log.warn("Message too long ({} chars) from chatId {}. Max allowed is {}",
                         query.length(), chatId, MAX_MESSAGE_LENGTH);
                 telegramService.sendMessage(chatId,
                         "Извини, твоё сообщение слишком длинное\uD83D\uDE33\n" +
-                                "Пожалуйста, отправь сообщение короче 255 символов");
+                                "Пожалуйста, отправь сообщение короче 255 символов", TelegramDeliveryQueue.Priority.URGENT);
+                outcome(observation, "too_long");
                 return;
             }
 
-            boolean isStudyQuestion = yandexGptService.checkIsStudyQuestion(query);
-            if (!isStudyQuestion) {
-                String shortAnswer = yandexGptService.answerShort(query);
+            CompletableFuture<QueryAnalysis> analysisFuture = async("analysis", () -> yandexGptService.analyzeQuery(query))
+                    .exceptionally(BotService::degradedAnalysis);
+            CompletableFuture<float[]> queryEmbedding = async("embedding", () -> vectorDbService.embedQuery(query))
+                    .exceptionally(BotService::missingEmbedding);
+            CompletableFuture<List<ExternalLink>> externalLinksFuture = async("external_search", () -> externalSearchService.search(query));
+            CompletableFuture<List<ChunkCard>> bestChunksFuture = analysisFuture
+                    .thenCombineAsync(queryEmbedding, (analysis, embedding) -> analysis.isStudy()
+                            ? timed("retrieval", () -> hybridSearchService.findRelevantChunks(query, embedding, analysis.getTags()))
+                            : List.<ChunkCard>of(), botPipelineExecutor);
+            speculative = List.of(queryEmbedding, externalLinksFuture, bestChunksFuture);
+
+            QueryAnalysis analysis = analysisFuture.join();
+            if (!analysis.isStudy()) {
+                cancelAll(speculative);
+                String shortAnswer = timed("short_answer", () -> yandexGptService.answerShort(query));
                 telegramService.sendMessage(chatId, shortAnswer +
                         "\n\nМожет, у тебя есть вопрос по учебным материалам?\uD83D\uDE09");
+                outcome(observation, "not_study");
                 return;
             }
 
-            List<String> tags = yandexGptService.extractTags(query);
-            List<Chunk> candidateChunks = chunkService.findByTags(tags);
-            List<Chunk> bestChunks = vectorDbService.findTopRelevantChunks(query, candidateChunks);
-            List<ExternalLink> externalLinks = externalSearchService.search(query);
-
-            if (bestChunks.isEmpty() && externalLinks.isEmpty()) {
-                telegramService.sendMessage(chatId,
-                        "Извини, я не смог найти ответ ни в учебных материалах, ни в открытых источниках\uD83D\uDE14\n" +
-                        "Попробуй переформулировать свой вопрос");
-                return;
-            }
-
+            boolean isTryFindLocation = analysis.isLocationLookup();
+            float[] embedding = queryEmbedding.join();
+            List<ExternalLink> externalLinks = externalLinksFuture.join();
             StringBuilder answer = new StringBuilder();
 
-            boolean isTryFindLocation = yandexGptService.checkIsTryFindLocationQuestion(query);
-            if (!isTryFindLocation && !bestChunks.isEmpty()) {
-                answer.append(yandexGptService.answerCompleteAnswer(query, bestChunks));
-            }
-
-            if (!bestChunks.isEmpty()) {
-                answer.append(formatChunksAnswer(bestChunks));
+            Optional<String> cachedAnswer = embedding == null
+                    ? Optional.empty()
+                    : timed("cache_lookup", () -> semanticAnswerCache.lookup(embedding, isTryFindLocation));
+            String outcome = "answered";
+            if (cachedAnswer.isPresent()) {
+                bestChunksFuture.cancel(true);
+                answer.append(cachedAnswer.get());
+                outcome = "cached";
             } else {
-                answer.append("К сожалению, я не нашел в учебных материалах ничего по твоему вопросу\uD83E\uDDD0\n");
-                answer.append("\nОтвечу, опираясь на общедоступные сведения:");
-                answer.append("\n").append(yandexGptService.answerShort(query)).append("\n");
+                List<ChunkCard> bestChunks = bestChunksFuture.join();
+
+                if (bestChunks.isEmpty() && externalLinks.isEmpty()) {
+                    telegramService.sendMessage(chatId,
+                            "Извини, я не смог найти ответ ни в учебных материалах, ни в открытых источниках\uD83D\uDE14\n" +
+                            "Попробуй переформулировать свой вопрос");
+                    outcome(observation, "no_results");
+                    return;
+                }
+
+                if (!bestChunks.isEmpty()) {
+                    String completeAnswer = "";
+                    boolean degraded = false;
+                    try {
+                        if (!isTryFindLocation && streamingEnabled) {
+                            StreamingReply streamingReply = telegramService.startStreamingReply(chatId, "Ищу ответ в учебных материалах\uD83D\uDD0E");
+                            reply = streamingReply;
+                            completeAnswer = timed("completion",
+                                    () -> yandexGptService.answerCompleteAnswerStreaming(query, bestChunks, streamingReply::update));
+                        } else if (!isTryFindLocation) {
+                            completeAnswer = timed("completion", () -> yandexGptService.answerCompleteAnswer(query, bestChunks));
+                        }
+                    } catch (UpstreamUnavailableException e) {
+                        log.warn("Answer generation unavailable, replying with material locations only: {}", e.getMessage());
+                        completeAnswer = DEGRADED_ANSWER;
+                        degraded = true;
+                        outcome = "degraded";
+                    }
+                    String materialsAnswer = completeAnswer + formatChunksAnswer(bestChunks);
+                    if (!degraded && embedding != null) {
+                        semanticAnswerCache.put(embedding, isTryFindLocation, materialsAnswer,
+                                bestChunks.stream().map(ChunkCard::id).toList());
+                    }
+                    answer.append(materialsAnswer);
+                } else {
+                    answer.append("К сожалению, я не нашел в учебных материалах ничего по твоему вопросу\uD83E\uDDD0\n");
+                    answer.append("\nОтвечу, опираясь на общедоступные сведения:");
+                    answer.append("\n").append(timed("short_answer", () -> yandexGptService.answerShort(query))).append("\n");
+                    outcome = "general_answer";
+                }
             }
 
             if (!externalLinks.isEmpty()) {
@@ -81,30 +158,113 @@ public class BotService {
                         .append(formatExternalLinks(externalLinks));
             }
 
-            telegramService.sendMessage(chatId, answer.toString());
+            reply(chatId, reply, answer.toString(), TelegramDeliveryQueue.Priority.NORMAL);
+            outcome(observation, outcome);
 
         } catch (Exception e) {
+            if (unavailableCause(e) != null) {
+                outcome(observation, "overloaded");
+                log.warn("Yandex API unavailable while handling user message: {}", e.getMessage());
+                reply(chatId, reply,
+                        "Сейчас я перегружен запросами\uD83D\uDE35\u200D\uD83D\uDCAB\n" +
+                                "Попробуй повторить через минуту", TelegramDeliveryQueue.Priority.URGENT);
+                return;
+            }
+            outcome(observation, "error");
+            observation.error(e);
             log.error("Error while handling user message", e);
-            telegramService.sendMessage(chatId,
+            reply(chatId, reply,
                     "Извини, сейчас я не могу обработать твой запрос\uD83D\uDE35\u200D\uD83D\uDCAB\n" +
-                            "Попробуй повторить через несколько минут");
+                            "Попробуй повторить через несколько минут", TelegramDeliveryQueue.Priority.URGENT);
+        } finally {
+            cancelAll(speculative);
         }
     }
 
+    /**
+     * When the model is unavailable the query is treated as a study question, so the user still gets material locations.
+     */
+    private static QueryAnalysis degradedAnalysis(Throwable error) {
+        UpstreamUnavailableException unavailable = unavailableCause(error);
+        if (unavailable == null) {
+            throw error instanceof CompletionException completion ? completion : new CompletionException(error);
+        }
+        log.warn("Query analysis unavailable, assuming a study question: {}", unavailable.getMessage());
+        return new QueryAnalysis(true, false, List.of());
+    }
+
+    /**
+     * Without a query vector the answer is still found by the full-text and tag rankings; only the cache is skipped.
+     */
+    private static float[] missingEmbedding(Throwable error) {
+        log.warn("Query embedding unavailable, searching without vectors: {}", error.getMessage());
+        return null;
+    }
+
+    private static UpstreamUnavailableException unavailableCause(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof UpstreamUnavailableException unavailable) {
+                return unavailable;
+            }
+        }
+        return null;
+    }
+
+    private void reply(Long chatId, StreamingReply reply, String text, TelegramDeliveryQueue.Priority priority) {
+        if (reply != null) {
+            reply.complete(text);
+        } else {
+            telegramService.sendMessage(chatId, text, priority);
+        }
+    }
+
+    private static void outcome(Observation observation, String outcome) {
+        observation.lowCardinalityKeyValue("outcome", outcome);
+    }
+
+    private <T> T timed(String stage, Supplier<T> task) {
+        return Timer.builder("bot.stage")
+                .description("Latency of one stage of answering a user message")
+                .tag("stage", stage)
+                .register(meterRegistry)
+                .record(task);
+    }
+
+    private <T> CompletableFuture<T> async(String stage, Supplier<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> running = botPipelineExecutor.submit(() -> {
+            try {
+                result.complete(timed(stage, task));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                running.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private void cancelAll(List<CompletableFuture<?>> futures) {
+        futures.forEach(future -> future.cancel(true));
+    }
+
 
-    private String formatChunksAnswer(List<Chunk> chunks) {
+    static String formatChunksAnswer(List<ChunkCard> chunks) {
         StringBuilder sb = new StringBuilder();
         sb.append("\n\nРасположение информации в учебных материалах:\n");
 
         LinkedHashMap<String, LinkedHashMap<String, List<String>>> grouped = chunks.stream()
-                .filter(p -> p.getDownloadedFile() != null && p.getDownloadedFile().getCourse() != null)
+                .filter(p -> p.fileName() != null && p.courseName() != null)
                 .collect(Collectors.groupingBy(
-                        p -> p.getDownloadedFile().getCourse().getName(),
+                        ChunkCard::courseName,
                         LinkedHashMap::new,
                         Collectors.groupingBy(
-                                p -> p.getDownloadedFile().getName(),
+                                ChunkCard::fileName,
                                 LinkedHashMap::new,
-                                Collectors.mapping(Chunk::getUrl, Collectors.toList())
+                                Collectors.mapping(ChunkCard::url, Collectors.toList())
                         )
                 ));
 
@@ -0,0 +1,75 @@
+package com.neoflex.studymate.services.bot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Escaping and splitting of plain text for Telegram's MarkdownV2 parse mode.
+ * Text is split before escaping, so an escape sequence is never cut in half.
+ */
+final class MarkdownV2 {
+
+    static final int MAX_MESSAGE_LENGTH = 4096;
+
+    private static final String SPECIAL_CHARACTERS = "_*[]()~`>#+-=|{}.!";
+
+    private MarkdownV2() {
+    }
+
+    static String escape(String text) {
+        if (text == null) return null;
+        return text.replaceAll("([_\\*\\[\\]\\(\\)~`>#+\\-=|{}.!\\\\])", "\\\\$1");
+    }
+
+    /**
+     * Splits the text into escaped parts of at most {@code maxLength} characters,
+     * preferring paragraph, line and word boundaries over hard cuts.
+     */
+    static List<String> split(String text, int maxLength) {
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = start;
+            int escapedLength = 0;
+            while (end < text.length()) {
+                int width = escapedWidth(text.charAt(end));
+                if (escapedLength + width > maxLength) {
+                    break;
+                }
+                escapedLength += width;
+                end++;
+            }
+            if (end < text.length()) {
+                end = cutPoint(text, start, end);
+            }
+            String part = text.substring(start, end).stripTrailing();
+            if (!part.isEmpty()) {
+                parts.add(escape(part));
+            }
+            start = skipLineBreaks(text, end);
+        }
+        return parts;
+    }
+
+    private static int cutPoint(String text, int start, int limit) {
+        int minimum = start + (limit - start) / 2;
+        for (String separator : new String[]{"\n\n", "\n", " "}) {
+            int index = text.lastIndexOf(separator, limit - separator.length());
+            if (index >= minimum) {
+                return index + separator.length();
+            }
+        }
+        return Character.isLowSurrogate(text.charAt(limit)) && limit - 1 > start ? limit - 1 : limit;
+    }
+
+    private static int skipLineBreaks(String text, int index) {
+        while (index < text.length() && (text.charAt(index) == '\n' || text.charAt(index) == ' ')) {
+            index++;
+        }
+        return index;
+    }
+
+    private static int escapedWidth(char c) {
+        return c == '\\' || SPECIAL_CHARACTERS.indexOf(c) >= 0 ? 2 : 1;
+    }
+}
@@ -0,0 +1,160 @@
+package com.neoflex.studymate.services.bot;
+
+import com.neoflex.studymate.utils.VectorMath;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Slf4j
+@Component
+public class SemanticAnswerCache implements MeterBinder {
+
+    private final boolean enabled;
+    private final double similarityThreshold;
+    private final long ttlNanos;
+    private final int maxSize;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Deque<Entry> entries = new ArrayDeque<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong lookupNanos = new AtomicLong();
+
+    public SemanticAnswerCache(@Value("${app.answer-cache.enabled}") boolean enabled,
+                               @Value("${app.answer-cache.similarity-threshold}") double similarityThreshold,
+                               @Value("${app.answer-cache.ttl}") Duration ttl,
+                               @Value("${app.answer-cache.max-size}") int maxSize) {
+        this.enabled = enabled;
+        this.similarityThreshold = similarityThreshold;
+        this.ttlNanos = ttl.toNanos();
+        this.maxSize = maxSize;
+    }
+
+    public Optional<String> lookup(float[] queryEmbedding, boolean locationLookup) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        long start = System.nanoTime();
+        float[] normalized = VectorMath.normalize(queryEmbedding);
+
+        Entry best = null;
+        double bestSimilarity = similarityThreshold;
+        lock.readLock().lock();
+        try {
+            for (Entry entry : entries) {
+                if (entry.locationLookup() != locationLookup || entry.expiresAt() - start < 0) {
+                    continue;
+                }
+                double similarity = VectorMath.dot(normalized, entry.embedding());
+                if (similarity >= bestSimilarity) {
+                    bestSimilarity = similarity;
+                    best = entry;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lookupNanos.addAndGet(System.nanoTime() - start);
+        if (best == null) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+        hits.incrementAndGet();
+        log.debug("Semantic answer cache hit with similarity {}", bestSimilarity);
+        return Optional.of(best.answer());
+    }
+
+    public void put(float[] queryEmbedding, boolean locationLookup, String answer, Collection<Long> chunkIds) {
+        if (!enabled) {
+            return;
+        }
+        Entry entry = new Entry(VectorMath.normalize(queryEmbedding), locationLookup, answer, Set.copyOf(chunkIds),
+                System.nanoTime() + ttlNanos);
+        lock.writeLock().lock();
+        try {
+            long now = System.nanoTime();
+            entries.removeIf(e -> e.expiresAt() - now < 0);
+            while (entries.size() >= maxSize) {
+                entries.pollFirst();
+            }
+            entries.addLast(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void invalidateChunk(long chunkId) {
+        lock.writeLock().lock();
+        try {
+            int before = entries.size();
+            entries.removeIf(e -> e.chunkIds().contains(chunkId));
+            if (entries.size() != before) {
+                log.info("Invalidated {} cached answers built from chunk {}", before - entries.size(), chunkId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Same meter names as the Caffeine caches, so hit rates of all caches can be charted together.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets", hits, AtomicLong::get)
+                .tags("cache", "semantic-answers", "result", "hit")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", misses, AtomicLong::get)
+                .tags("cache", "semantic-answers", "result", "miss")
+                .register(registry);
+        Gauge.builder("cache.size", this, cache -> cache.stats().size())
+                .tag("cache", "semantic-answers")
+                .register(registry);
+        FunctionTimer.builder("cache.lookup", this, cache -> cache.hits.get() + cache.misses.get(),
+                        cache -> cache.lookupNanos.get(), TimeUnit.NANOSECONDS)
+                .tag("cache", "semantic-answers")
+                .register(registry);
+    }
+
+    public Stats stats() {
+        lock.readLock().lock();
+        try {
+            return new Stats(hits.get(), misses.get(), lookupNanos.get(), entries.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private record Entry(float[] embedding, boolean locationLookup, String answer, Set<Long> chunkIds, long expiresAt) {
+    }
+
+    public record Stats(long hits, long misses, long totalLookupNanos, int size) {
+
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        public double averageLookupMicros() {
+            long total = hits + misses;
+            return total == 0 ? 0 : totalLookupNanos / 1000.0 / total;
+        }
+    }
+}
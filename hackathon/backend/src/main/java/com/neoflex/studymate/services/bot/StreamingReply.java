@@ -0,0 +1,48 @@
+package com.neoflex.studymate.services.bot;
+
+import java.time.Duration;
+
+/**
+ * A placeholder message that is edited as the answer is generated.
+ * Edits are throttled to one per interval and queued without waiting, so the caller (the model stream reader)
+ * never blocks on Telegram; {@link #complete} writes the final text and waits for it.
+ */
+public class StreamingReply {
+
+    private final TelegramService telegramService;
+    private final Long chatId;
+    private final Long messageId;
+    private final long intervalNanos;
+
+    private long lastEditAt;
+    private String lastText;
+
+    StreamingReply(TelegramService telegramService, Long chatId, Long messageId, Duration interval) {
+        this.telegramService = telegramService;
+        this.chatId = chatId;
+        this.messageId = messageId;
+        this.intervalNanos = interval.toNanos();
+        this.lastEditAt = System.nanoTime();
+    }
+
+    public synchronized void update(String partialText) {
+        if (messageId == null || partialText == null || partialText.isBlank() || partialText.equals(lastText)) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - lastEditAt < intervalNanos) {
+            return;
+        }
+        lastEditAt = now;
+        lastText = partialText;
+        telegramService.editMessageText(chatId, messageId, partialText);
+    }
+
+    public synchronized void complete(String finalText) {
+        // always replaced: the last partial edit may still be queued, failed, or show only the first part
+        if (messageId == null || !telegramService.replaceMessage(chatId, messageId, finalText)) {
+            telegramService.sendMessage(chatId, finalText);
+        }
+        lastText = finalText;
+    }
+}
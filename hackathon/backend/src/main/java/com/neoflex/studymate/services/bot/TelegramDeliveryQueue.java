@@ -0,0 +1,395 @@
+package com.neoflex.studymate.services.bot;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neoflex.studymate.utils.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Outbound Telegram requests, paced to the Bot API limits: a global token bucket and at most one request
+ * per chat interval, with one request in flight per chat so the parts of a long answer arrive in order.
+ * Urgent deliveries overtake normal ones, and 429 responses are retried after the {@code retry_after} Telegram asks for.
+ * Calls submitted with a coalescing key replace a still-queued call with the same key, so a burst of progressive edits
+ * of one message costs one request per chat interval.
+ */
+@Slf4j
+@Component
+public class TelegramDeliveryQueue {
+
+    public enum Priority {
+        /** Short service replies: busy, error and validation messages. */
+        URGENT,
+        NORMAL
+    }
+
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final String apiUrl;
+    private final String token;
+    private final TokenBucket globalRate;
+    private final long perChatIntervalNanos;
+    private final int capacity;
+    private final int urgentReserve;
+    private final int maxAttempts;
+    private final Duration shutdownTimeout;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final TreeSet<Delivery> queue = new TreeSet<>();
+    /** Earliest time the next request to a chat may start; {@code Long.MAX_VALUE} while one is in flight. */
+    private final Map<Long, Long> chatReadyAt = new HashMap<>();
+    /** Queued (not yet sent) deliveries by coalescing key. */
+    private final Map<String, Delivery> coalescing = new HashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ExecutorService senders = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("telegram-send-", 0).factory());
+    private final Thread dispatcher;
+    private final Counter retries;
+    private final Counter dropped;
+    private final Counter coalesced;
+
+    private volatile boolean running = true;
+
+    public TelegramDeliveryQueue(@Qualifier("telegramRestTemplate") RestTemplate restTemplate,
+                                 ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.bot.api-url}") String apiUrl,
+                                 @Value("${app.bot.token}") String token,
+                                 @Value("${app.bot.delivery.global-rate}") double globalRate,
+                                 @Value("${app.bot.delivery.per-chat-interval}") Duration perChatInterval,
+                                 @Value("${app.bot.delivery.queue-capacity}") int capacity,
+                                 @Value("${app.bot.delivery.urgent-reserve}") int urgentReserve,
+                                 @Value("${app.bot.delivery.max-attempts}") int maxAttempts,
+                                 @Value("${app.bot.delivery.shutdown-timeout}") Duration shutdownTimeout) {
+        this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.apiUrl = apiUrl;
+        this.token = token;
+        this.globalRate = new TokenBucket(globalRate, globalRate);
+        this.perChatIntervalNanos = perChatInterval.toNanos();
+        this.capacity = capacity;
+        this.urgentReserve = urgentReserve;
+        this.maxAttempts = maxAttempts;
+        this.shutdownTimeout = shutdownTimeout;
+        this.retries = Counter.builder("telegram.delivery.retries").register(meterRegistry);
+        this.dropped = Counter.builder("telegram.delivery.dropped").register(meterRegistry);
+        this.coalesced = Counter.builder("telegram.delivery.coalesced").register(meterRegistry);
+        Gauge.builder("telegram.delivery.queue.depth", this, TelegramDeliveryQueue::size).register(meterRegistry);
+        this.dispatcher = Thread.ofVirtual().name("telegram-delivery").start(this::dispatchLoop);
+    }
+
+    /**
+     * Queues a Bot API call; the future completes with the {@code result} object of the response,
+     * or exceptionally when the request is rejected, the queue is full or stopped, or all attempts failed.
+     * Urgent calls may use {@code urgent-reserve} slots beyond the normal capacity.
+     */
+    public CompletableFuture<Map<String, Object>> submit(Long chatId, String method, Map<String, Object> request,
+                                                         Priority priority) {
+        return enqueue(chatId, null, method, request, priority);
+    }
+
+    /**
+     * Like {@link #submit}, but if a call with the same chat and key is still queued, it takes this request and keeps
+     * its place in the queue, and both callers get its future. A call already in flight is not affected.
+     */
+    public CompletableFuture<Map<String, Object>> submitLatest(Long chatId, String key, String method,
+                                                               Map<String, Object> request, Priority priority) {
+        return enqueue(chatId, chatId + ":" + key, method, request, priority);
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private CompletableFuture<Map<String, Object>> enqueue(Long chatId, String key, String method,
+                                                           Map<String, Object> request, Priority priority) {
+        Delivery delivery = new Delivery(chatId, key, method, request, priority, sequence.incrementAndGet(), System.nanoTime());
+        lock.lock();
+        try {
+            if (!running) {
+                delivery.result.completeExceptionally(new IllegalStateException("Telegram delivery queue is stopped"));
+                return delivery.result;
+            }
+            Delivery queued = key == null ? null : coalescing.get(key);
+            if (queued != null) {
+                Delivery replaced = queued.withRequest(request);
+                queue.remove(queued);
+                queue.add(replaced);
+                coalescing.put(key, replaced);
+                coalesced.increment();
+                return replaced.result;
+            }
+            int limit = priority == Priority.URGENT ? capacity + urgentReserve : capacity;
+            if (queue.size() >= limit) {
+                dropped.increment();
+                log.warn("Telegram delivery queue is full ({}), dropping {} to chat {}", limit, method, chatId);
+                delivery.result.completeExceptionally(new IllegalStateException("Telegram delivery queue is full"));
+                return delivery.result;
+            }
+            queue.add(delivery);
+            if (key != null) {
+                coalescing.put(key, delivery);
+            }
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        return delivery.result;
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            try {
+                Delivery delivery = takeReady();
+                globalRate.acquire();
+                senders.execute(() -> send(delivery));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Takes the highest-priority delivery whose chat is ready, waiting until one is.
+     */
+    private Delivery takeReady() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                long nextReadyAt = Long.MAX_VALUE;
+                for (Iterator<Delivery> it = queue.iterator(); it.hasNext(); ) {
+                    Delivery delivery = it.next();
+                    long readyAt = chatReadyAt.getOrDefault(delivery.chatId, now);
+                    if (readyAt <= now) {
+                        it.remove();
+                        if (delivery.key != null) {
+                            coalescing.remove(delivery.key, delivery);
+                        }
+                        chatReadyAt.put(delivery.chatId, Long.MAX_VALUE);
+                        return delivery;
+                    }
+                    nextReadyAt = Math.min(nextReadyAt, readyAt);
+                }
+                if (nextReadyAt == Long.MAX_VALUE) {
+                    changed.await();
+                } else {
+                    changed.awaitNanos(nextReadyAt - now);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void send(Delivery delivery) {
+        long retryAfterNanos = 0;
+        String outcome = "success";
+        try {
+            Map<String, Object> response = restTemplate.postForObject(apiUrl(delivery.method), delivery.request, Map.class);
+            Object result = response == null ? null : response.get("result");
+            delivery.result.complete(result instanceof Map<?, ?> map ? castResult(map) : Map.of());
+        } catch (HttpClientErrorException.TooManyRequests e) {
+            retryAfterNanos = TimeUnit.SECONDS.toNanos(retryAfterSeconds(e.getResponseBodyAsString()));
+            if (delivery.attempts + 1 < maxAttempts) {
+                outcome = null;
+            } else {
+                outcome = "rate-limited";
+                log.error("Giving up on {} to chat {} after {} rate-limited attempts", delivery.method, delivery.chatId, maxAttempts);
+                delivery.result.completeExceptionally(e);
+            }
+        } catch (Exception e) {
+            outcome = "error";
+            delivery.result.completeExceptionally(e);
+        } finally {
+            if (outcome != null) {
+                Timer.builder("telegram.delivery.latency")
+                        .description("Time from queueing a Telegram request until it is answered")
+                        .tag("method", delivery.method)
+                        .tag("outcome", outcome)
+                        .register(meterRegistry)
+                        .record(Duration.ofNanos(System.nanoTime() - delivery.enqueuedAt));
+            }
+            finish(delivery, outcome == null, retryAfterNanos);
+        }
+    }
+
+    private void finish(Delivery delivery, boolean retry, long retryAfterNanos) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            chatReadyAt.put(delivery.chatId, now + Math.max(perChatIntervalNanos, retryAfterNanos));
+            if (retry) {
+                retry(delivery, retryAfterNanos);
+            }
+            if (chatReadyAt.size() > 10_000) {
+                chatReadyAt.values().removeIf(readyAt -> readyAt < now);
+            }
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void retry(Delivery delivery, long retryAfterNanos) {
+        if (!running) {
+            delivery.result.completeExceptionally(new IllegalStateException("Telegram delivery queue is stopped"));
+            return;
+        }
+        Delivery newer = delivery.key == null ? null : coalescing.get(delivery.key);
+        if (newer != null) {
+            // a newer request with the same key is queued and supersedes this one
+            newer.result.whenComplete((result, error) -> {
+                if (error != null) {
+                    delivery.result.completeExceptionally(error);
+                } else {
+                    delivery.result.complete(result);
+                }
+            });
+            return;
+        }
+        retries.increment();
+        log.warn("Telegram rate limit for chat {}, retrying {} in {} ms", delivery.chatId, delivery.method,
+                TimeUnit.NANOSECONDS.toMillis(retryAfterNanos));
+        Delivery retry = delivery.retry();
+        queue.add(retry);
+        if (retry.key != null) {
+            coalescing.put(retry.key, retry);
+        }
+    }
+
+    private long retryAfterSeconds(String body) {
+        try {
+            JsonNode retryAfter = objectMapper.readTree(body).path("parameters").path("retry_after");
+            if (retryAfter.canConvertToLong()) {
+                return Math.max(1, retryAfter.asLong());
+            }
+        } catch (Exception e) {
+            log.debug("Failed to parse Telegram 429 response: {}", body);
+        }
+        return 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> castResult(Map<?, ?> result) {
+        return (Map<String, Object>) result;
+    }
+
+    private String apiUrl(String method) {
+        return apiUrl + "/bot" + token + "/" + method;
+    }
+
+    /**
+     * Gives queued messages up to {@code shutdown-timeout} to go out; whatever is left fails its future.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        long deadline = System.nanoTime() + shutdownTimeout.toNanos();
+        while (size() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+        }
+        lock.lock();
+        try {
+            running = false;
+        } finally {
+            lock.unlock();
+        }
+        dispatcher.interrupt();
+        senders.shutdown();
+        if (!senders.awaitTermination(shutdownTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+            senders.shutdownNow();
+        }
+
+        List<Delivery> left;
+        lock.lock();
+        try {
+            left = new ArrayList<>(queue);
+            queue.clear();
+            coalescing.clear();
+        } finally {
+            lock.unlock();
+        }
+        if (!left.isEmpty()) {
+            log.warn("Telegram delivery queue stopped with {} messages undelivered", left.size());
+            IllegalStateException stopped = new IllegalStateException("Telegram delivery queue is stopped");
+            left.forEach(delivery -> delivery.result.completeExceptionally(stopped));
+        }
+    }
+
+    private static final class Delivery implements Comparable<Delivery> {
+        private final Long chatId;
+        private final String key;
+        private final String method;
+        private final Map<String, Object> request;
+        private final Priority priority;
+        private final long sequence;
+        private final long enqueuedAt;
+        private final int attempts;
+        private final CompletableFuture<Map<String, Object>> result;
+
+        Delivery(Long chatId, String key, String method, Map<String, Object> request, Priority priority, long sequence,
+                 long enqueuedAt) {
+            this(chatId, key, method, request, priority, sequence, enqueuedAt, 0, new CompletableFuture<>());
+        }
+
+        private Delivery(Long chatId, String key, String method, Map<String, Object> request, Priority priority,
+                         long sequence, long enqueuedAt, int attempts, CompletableFuture<Map<String, Object>> result) {
+            this.chatId = chatId;
+            this.key = key;
+            this.method = method;
+            this.request = request;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.enqueuedAt = enqueuedAt;
+            this.attempts = attempts;
+            this.result = result;
+        }
+
+        Delivery retry() {
+            return new Delivery(chatId, key, method, request, priority, sequence, enqueuedAt, attempts + 1, result);
+        }
+
+        Delivery withRequest(Map<String, Object> newRequest) {
+            return new Delivery(chatId, key, method, newRequest, priority, sequence, enqueuedAt, attempts, result);
+        }
+
+        @Override
+        public int compareTo(Delivery other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
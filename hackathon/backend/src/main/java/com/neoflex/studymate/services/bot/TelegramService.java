@@ -4,38 +4,117 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.HttpClientErrorException;
 
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class TelegramService {
-    private final RestTemplate restTemplate = new RestTemplate();
+    private static final String NOT_MODIFIED = "message is not modified";
 
-    @Value("${app.bot.token}")
-    private String token;
+    private final TelegramDeliveryQueue deliveryQueue;
 
+    @Value("${app.bot.streaming.edit-interval}")
+    private Duration editInterval;
+
+    /**
+     * Queues the text for delivery, split into several messages when it exceeds Telegram's length limit.
+     */
     public void sendMessage(Long chatId, String text) {
-        text = escapeMarkdownV2(text);
-        String url = "https://api.telegram.org/bot" + token + "/sendMessage";
-        Map<String, Object> request = new HashMap<>();
-        request.put("chat_id", chatId);
-        request.put("text", text);
-        request.put("parse_mode", "MarkdownV2");
+        sendMessage(chatId, text, TelegramDeliveryQueue.Priority.NORMAL);
+    }
+
+    public void sendMessage(Long chatId, String text, TelegramDeliveryQueue.Priority priority) {
+        for (String part : MarkdownV2.split(text, MarkdownV2.MAX_MESSAGE_LENGTH)) {
+            send(chatId, part, priority);
+        }
+    }
+
+    public StreamingReply startStreamingReply(Long chatId, String placeholder) {
+        Long messageId = null;
+        try {
+            Map<String, Object> result = send(chatId, MarkdownV2.escape(placeholder), TelegramDeliveryQueue.Priority.NORMAL).join();
+            if (result.get("message_id") instanceof Number id) {
+                messageId = id.longValue();
+            }
+        } catch (Exception e) {
+            log.error("Failed to send placeholder to chatId {}", chatId, e);
+        }
+        return new StreamingReply(this, chatId, messageId, editInterval);
+    }
+
+    /**
+     * Queues an edit showing the beginning of the text in an existing message and returns without waiting;
+     * a newer edit replaces one that is still queued. The rest of the text is left for {@link #replaceMessage}.
+     */
+    void editMessageText(Long chatId, Long messageId, String text) {
+        List<String> parts = MarkdownV2.split(text, MarkdownV2.MAX_MESSAGE_LENGTH);
+        if (!parts.isEmpty()) {
+            edit(chatId, messageId, parts.get(0)).exceptionally(error -> {
+                log.warn("Failed to edit message {} in chatId {}: {}", messageId, chatId, error.getMessage());
+                return null;
+            });
+        }
+    }
 
+    /**
+     * Replaces the text of an existing message, superseding queued edits of it, and waits for the result;
+     * whatever does not fit is sent as follow-up messages.
+     */
+    boolean replaceMessage(Long chatId, Long messageId, String text) {
+        List<String> parts = MarkdownV2.split(text, MarkdownV2.MAX_MESSAGE_LENGTH);
+        if (parts.isEmpty()) {
+            return false;
+        }
         try {
-            restTemplate.postForObject(url, request, String.class);
-            log.debug("Message sent to chatId {}: {}", chatId, text);
+            edit(chatId, messageId, parts.get(0)).join();
+            log.debug("Message {} edited in chatId {}", messageId, chatId);
         } catch (Exception e) {
-            log.error("Failed to send message to chatId {}", chatId, e);
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            // an earlier progressive edit may already show exactly this text
+            if (!(cause instanceof HttpClientErrorException.BadRequest badRequest)
+                    || !badRequest.getResponseBodyAsString().contains(NOT_MODIFIED)) {
+                log.error("Failed to edit message {} in chatId {}", messageId, chatId, cause);
+                return false;
+            }
+        }
+        for (String part : parts.subList(1, parts.size())) {
+            send(chatId, part, TelegramDeliveryQueue.Priority.NORMAL);
         }
+        return true;
+    }
+
+    private CompletableFuture<Map<String, Object>> edit(Long chatId, Long messageId, String escapedText) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("chat_id", chatId);
+        request.put("message_id", messageId);
+        request.put("text", escapedText);
+        request.put("parse_mode", "MarkdownV2");
+
+        return deliveryQueue.submitLatest(chatId, "edit:" + messageId, "editMessageText", request,
+                TelegramDeliveryQueue.Priority.NORMAL);
     }
 
-    private String escapeMarkdownV2(String text) {
-        if (text == null) return null;
-        return text.replaceAll("([_\\*\\[\\]\\(\\)~`>#+\\-=|{}.!])", "\\\\$1");
+    private CompletableFuture<Map<String, Object>> send(Long chatId, String escapedText, TelegramDeliveryQueue.Priority priority) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("chat_id", chatId);
+        request.put("text", escapedText);
+        request.put("parse_mode", "MarkdownV2");
+
+        return deliveryQueue.submit(chatId, "sendMessage", request, priority)
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        log.error("Failed to send message to chatId {}", chatId, error);
+                    } else {
+                        log.debug("Message sent to chatId {}: {}", chatId, escapedText);
+                    }
+                });
     }
 }
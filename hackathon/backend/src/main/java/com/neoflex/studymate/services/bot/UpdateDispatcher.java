@@ -0,0 +1,104 @@
+package com.neoflex.studymate.services.bot;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Slf4j
+@Service
+public class UpdateDispatcher {
+
+    private static final String BUSY_MESSAGE = "Извини, сейчас у меня слишком много вопросов😵\n" +
+            "Попробуй повторить через минуту";
+
+    private final TelegramService telegramService;
+    private final int maxPending;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("bot-update-", 0).factory());
+    private final ConcurrentHashMap<Long, CompletableFuture<Void>> chatTails = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Cache<Long, Boolean> seenUpdates;
+
+    public UpdateDispatcher(TelegramService telegramService,
+                            @Value("${app.bot.dispatcher.max-pending}") int maxPending,
+                            @Value("${app.bot.dispatcher.dedup-size}") long dedupSize) {
+        this.telegramService = telegramService;
+        this.maxPending = maxPending;
+        this.seenUpdates = Caffeine.newBuilder()
+                .maximumSize(dedupSize)
+                .expireAfterWrite(Duration.ofHours(1))
+                .build();
+    }
+
+    /**
+     * Queues the work behind earlier updates from the same chat and returns immediately.
+     * Redelivered updates are dropped; when the queue is full the chat gets a short "busy" reply instead.
+     */
+    public void dispatch(Long updateId, Long chatId, Runnable work) {
+        if (updateId != null && seenUpdates.asMap().putIfAbsent(updateId, Boolean.TRUE) != null) {
+            log.info("Skipping duplicate update {} from chat {}", updateId, chatId);
+            return;
+        }
+
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            log.warn("Dispatcher saturated ({} pending), shedding update {} from chat {}", maxPending, updateId, chatId);
+            executor.execute(() -> telegramService.sendMessage(chatId, BUSY_MESSAGE, TelegramDeliveryQueue.Priority.URGENT));
+            return;
+        }
+
+        // a rejected predecessor must not skip this update, so the chain continues past failures
+        CompletableFuture<Void> tail = chatTails.compute(chatId, (id, previous) ->
+                (previous == null ? CompletableFuture.<Void>completedFuture(null) : previous.exceptionally(error -> null))
+                        .thenRunAsync(() -> run(chatId, work), executor));
+        tail.whenComplete((result, error) -> {
+            chatTails.remove(chatId, tail);
+            if (isRejected(error)) {
+                // run() never started, so it could not release its slot
+                pending.decrementAndGet();
+                log.warn("Update {} from chat {} was rejected by the executor", updateId, chatId);
+            }
+        });
+    }
+
+    private static boolean isRejected(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof RejectedExecutionException;
+    }
+
+    public int pendingCount() {
+        return pending.get();
+    }
+
+    private void run(Long chatId, Runnable work) {
+        try {
+            work.run();
+        } catch (Exception e) {
+            log.error("Error processing update for chat {}", chatId, e);
+        } finally {
+            pending.decrementAndGet();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Dispatcher stopped with {} updates still pending", pending.get());
+            executor.shutdownNow();
+        }
+    }
+}
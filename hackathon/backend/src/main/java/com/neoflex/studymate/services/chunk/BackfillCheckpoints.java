@@ -0,0 +1,34 @@
+package com.neoflex.studymate.services.chunk;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Per-job watermarks in {@code dm.backfill_checkpoints}: the last chunk id a backfill has fully processed.
+ */
+@Component
+@RequiredArgsConstructor
+public class BackfillCheckpoints {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public long load(String job) {
+        List<Long> rows = jdbcTemplate.queryForList(
+                "SELECT last_chunk_id FROM dm.backfill_checkpoints WHERE job_name = ?", Long.class, job);
+        return rows.isEmpty() ? 0 : rows.get(0);
+    }
+
+    public void save(String job, long lastChunkId) {
+        jdbcTemplate.update(
+                "INSERT INTO dm.backfill_checkpoints(job_name, last_chunk_id, updated_at) VALUES (?, ?, now()) " +
+                        "ON CONFLICT (job_name) DO UPDATE SET last_chunk_id = EXCLUDED.last_chunk_id, updated_at = now()",
+                job, lastChunkId);
+    }
+
+    public void clear(String job) {
+        jdbcTemplate.update("DELETE FROM dm.backfill_checkpoints WHERE job_name = ?", job);
+    }
+}
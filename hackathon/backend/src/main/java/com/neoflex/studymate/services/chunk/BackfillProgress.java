@@ -0,0 +1,40 @@
+package com.neoflex.studymate.services.chunk;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live counters of a running backfill, read by the initialization health check.
+ */
+public class BackfillProgress {
+
+    private volatile long total = -1;
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    void start(long total) {
+        this.total = total;
+    }
+
+    void processed(long count) {
+        processed.addAndGet(count);
+    }
+
+    void failed(long count) {
+        failed.addAndGet(count);
+    }
+
+    /**
+     * Chunks pending when the backfill started, or -1 before it has counted them.
+     */
+    public long total() {
+        return total;
+    }
+
+    public long processed() {
+        return processed.get();
+    }
+
+    public long failed() {
+        return failed.get();
+    }
+}
@@ -0,0 +1,462 @@
+package com.neoflex.studymate.services.chunk;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.neoflex.studymate.dto.ChunkImportLine;
+import com.neoflex.studymate.services.search.HnswChunkRetriever;
+import com.neoflex.studymate.services.search.TagIndex;
+import com.neoflex.studymate.services.yandex.YandexGptService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Bulk import of chunks from an NDJSON stream. The upload is spooled to a temporary file, then its lines are parsed
+ * on a pipeline thread and pass through insert, tag, embed and index stages connected by bounded queues, so a slow
+ * stage pushes back on the reader instead of on the HTTP request. Every stage has its own worker count; chunks of all
+ * running imports share the stages.
+ * Chunks left untagged or unembedded after a failure are picked up by the startup backfill.
+ */
+@Slf4j
+@Service
+public class BulkIngestionPipeline {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO dm.chunks (id, title_name, id_file, source_url, content, created_at) VALUES (?, ?, ?, ?, ?, ?) " +
+                    "ON CONFLICT (id) DO NOTHING";
+
+    /** Length of {@code dm.chunks.title_name} and {@code dm.chunks.source_url}. */
+    private static final int MAX_COLUMN_LENGTH = 255;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ChunkService chunkService;
+    private final YandexGptService yandexGptService;
+    private final VectorCopyWriter vectorCopyWriter;
+    private final HnswChunkRetriever hnswChunkRetriever;
+    private final TagIndex tagIndex;
+    private final int insertBatchSize;
+    private final int tagWorkers;
+    private final int embedWorkers;
+    private final int embedBatchSize;
+    private final long maxUploadBytes;
+
+    private final BlockingQueue<Parsed> parsed;
+    private final BlockingQueue<Stored> stored;
+    private final BlockingQueue<Tagged> tagged;
+    private final BlockingQueue<Embedded> embedded;
+    private final Cache<String, ImportJob> jobs;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("bulk-ingestion-", 0).factory());
+
+    public BulkIngestionPipeline(JdbcTemplate jdbcTemplate,
+                                 ObjectMapper objectMapper,
+                                 ChunkService chunkService,
+                                 YandexGptService yandexGptService,
+                                 VectorCopyWriter vectorCopyWriter,
+                                 HnswChunkRetriever hnswChunkRetriever,
+                                 TagIndex tagIndex,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.ingestion.bulk.queue-capacity}") int queueCapacity,
+                                 @Value("${app.ingestion.bulk.insert-batch-size}") int insertBatchSize,
+                                 @Value("${app.ingestion.bulk.tag-workers}") int tagWorkers,
+                                 @Value("${app.ingestion.bulk.embed-workers}") int embedWorkers,
+                                 @Value("${app.ingestion.bulk.embed-batch-size}") int embedBatchSize,
+                                 @Value("${app.ingestion.bulk.job-retention}") Duration jobRetention,
+                                 @Value("${app.ingestion.bulk.max-upload-size}") DataSize maxUploadSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.chunkService = chunkService;
+        this.yandexGptService = yandexGptService;
+        this.vectorCopyWriter = vectorCopyWriter;
+        this.hnswChunkRetriever = hnswChunkRetriever;
+        this.tagIndex = tagIndex;
+        this.insertBatchSize = insertBatchSize;
+        this.tagWorkers = tagWorkers;
+        this.embedWorkers = embedWorkers;
+        this.embedBatchSize = embedBatchSize;
+        this.maxUploadBytes = maxUploadSize.toBytes();
+        this.parsed = new ArrayBlockingQueue<>(queueCapacity);
+        this.stored = new ArrayBlockingQueue<>(queueCapacity);
+        this.tagged = new ArrayBlockingQueue<>(queueCapacity);
+        this.embedded = new ArrayBlockingQueue<>(queueCapacity);
+        this.jobs = Caffeine.newBuilder().expireAfterAccess(jobRetention).build();
+
+        Map<String, BlockingQueue<?>> stages = Map.of("insert", parsed, "tag", stored, "embed", tagged, "index", embedded);
+        stages.forEach((stage, queue) -> Gauge.builder("ingestion.bulk.queue.depth", queue, BlockingQueue::size)
+                .tag("stage", stage)
+                .register(meterRegistry));
+    }
+
+    @PostConstruct
+    void start() {
+        executor.execute(() -> run("insert", parsed, insertBatchSize, this::insert));
+        for (int i = 0; i < tagWorkers; i++) {
+            executor.execute(() -> run("tag", stored, 1, this::tag));
+        }
+        for (int i = 0; i < embedWorkers; i++) {
+            executor.execute(() -> run("embed", tagged, embedBatchSize, this::embed));
+        }
+        executor.execute(() -> run("index", embedded, insertBatchSize, this::index));
+    }
+
+    /**
+     * Spools the NDJSON stream to a temporary file and returns the job as soon as the upload is stored;
+     * the lines are fed to the pipeline in the background. Invalid lines are rejected and reported in the job.
+     *
+     * @throws ImportRejectedException if the upload exceeds {@code app.ingestion.bulk.max-upload-size}, or if no
+     *                                 {@code fileId} is given and no line carries one
+     */
+    public ImportJob importChunks(InputStream body, Long fileId) throws IOException {
+        Path spool = Files.createTempFile("chunk-import-", ".ndjson");
+        try {
+            copy(body, spool);
+            if (fileId == null && !anyLineHasFileId(spool)) {
+                throw new ImportRejectedException(ImportRejectedException.Reason.NO_FILE_ID,
+                        "fileId is required as a parameter or on the lines of the upload");
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spool);
+            throw e;
+        }
+
+        ImportJob job = new ImportJob(UUID.randomUUID().toString());
+        jobs.put(job.id(), job);
+        log.info("Chunk import {} started for file {} ({} bytes)", job.id(), fileId, Files.size(spool));
+        executor.execute(() -> read(job, spool, fileId));
+        return job;
+    }
+
+    public Optional<ImportJob> job(String id) {
+        return Optional.ofNullable(jobs.getIfPresent(id));
+    }
+
+    private void copy(InputStream body, Path spool) throws IOException {
+        try (OutputStream out = Files.newOutputStream(spool)) {
+            byte[] buffer = new byte[8192];
+            long total = 0;
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                total += read;
+                if (total > maxUploadBytes) {
+                    throw new ImportRejectedException(ImportRejectedException.Reason.TOO_LARGE,
+                            "upload is larger than " + maxUploadBytes + " bytes");
+                }
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+
+    /**
+     * Stops at the first line with a {@code fileId}, so only an upload that is rejected anyway is parsed in full.
+     */
+    private boolean anyLineHasFileId(Path spool) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(spool, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    if (objectMapper.readValue(line, ChunkImportLine.class).getFileId() != null) {
+                        return true;
+                    }
+                } catch (IOException e) {
+                    // rejected with its line number when the import runs
+                }
+            }
+            return false;
+        }
+    }
+
+    private void read(ImportJob job, Path spool, Long fileId) {
+        try (BufferedReader reader = Files.newBufferedReader(spool, StandardCharsets.UTF_8)) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                job.received();
+                ChunkImportLine chunk;
+                try {
+                    chunk = objectMapper.readValue(line, ChunkImportLine.class);
+                } catch (IOException e) {
+                    job.rejected(lineNumber, "invalid JSON");
+                    continue;
+                }
+                if (chunk.getTitle() == null || chunk.getTitle().isBlank()
+                        || chunk.getContent() == null || chunk.getContent().isBlank()) {
+                    job.rejected(lineNumber, "title and content are required");
+                    continue;
+                }
+                Long lineFileId = chunk.getFileId() != null ? chunk.getFileId() : fileId;
+                if (lineFileId == null) {
+                    job.rejected(lineNumber, "fileId is required");
+                    continue;
+                }
+                if (chunk.getTitle().length() > MAX_COLUMN_LENGTH
+                        || chunk.getUrl() != null && chunk.getUrl().length() > MAX_COLUMN_LENGTH) {
+                    job.rejected(lineNumber, "title and url must not be longer than " + MAX_COLUMN_LENGTH + " characters");
+                    continue;
+                }
+                parsed.put(new Parsed(job, lineFileId, chunk.getTitle(), chunk.getUrl(), chunk.getContent()));
+            }
+            log.info("Chunk import {} received {} lines", job.id(), job.progress().received());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Chunk import {} stopped after {} lines", job.id(), job.progress().received());
+        } catch (IOException e) {
+            log.error("Reading chunk import {} failed", job.id(), e);
+            job.failed(0, "reading the upload failed: " + e.getMessage());
+        } finally {
+            job.receivingFinished();
+            try {
+                Files.deleteIfExists(spool);
+            } catch (IOException e) {
+                log.warn("Failed to delete chunk import spool {}: {}", spool, e.getMessage());
+            }
+        }
+    }
+
+    private void insert(List<Parsed> batch) throws InterruptedException {
+        List<Stored> rows = new ArrayList<>(batch.size());
+        try {
+            List<Long> ids = jdbcTemplate.queryForList(
+                    "SELECT nextval(pg_get_serial_sequence('dm.chunks', 'id')) FROM generate_series(1, ?)",
+                    Long.class, batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                rows.add(new Stored(batch.get(i), ids.get(i)));
+            }
+            Timestamp now = Timestamp.from(Instant.now());
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(), (ps, row) -> {
+                ps.setLong(1, row.id());
+                ps.setString(2, row.chunk().title());
+                ps.setObject(3, row.chunk().fileId(), Types.BIGINT);
+                ps.setString(4, row.chunk().url());
+                ps.setString(5, row.chunk().content());
+                ps.setTimestamp(6, now);
+            });
+        } catch (Exception e) {
+            log.warn("Batch insert of {} imported chunks failed, inserting one by one: {}", batch.size(), e.getMessage());
+            rows = insertOneByOne(batch, rows);
+        }
+        for (Stored row : rows) {
+            row.job().inserted(1);
+            stored.put(row);
+        }
+    }
+
+    /**
+     * Row-by-row fallback that keeps ids already allocated for the batch, so rows the batch did write are not duplicated.
+     */
+    private List<Stored> insertOneByOne(List<Parsed> batch, List<Stored> allocated) {
+        List<Stored> inserted = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Parsed chunk = batch.get(i);
+            try {
+                Long id = i < allocated.size() ? Long.valueOf(allocated.get(i).id()) : jdbcTemplate.queryForObject(
+                        "SELECT nextval(pg_get_serial_sequence('dm.chunks', 'id'))", Long.class);
+                jdbcTemplate.update(INSERT_SQL, id, chunk.title(), chunk.fileId(), chunk.url(), chunk.content(),
+                        Timestamp.from(Instant.now()));
+                inserted.add(new Stored(chunk, id));
+            } catch (Exception e) {
+                chunk.job().failed(1, "insert of '" + chunk.title() + "' failed: " + e.getMessage());
+                chunk.job().dropped(1);
+            }
+        }
+        return inserted;
+    }
+
+    private void tag(List<Stored> batch) throws InterruptedException {
+        for (Stored row : batch) {
+            List<String> tags = List.of();
+            try {
+                tags = yandexGptService.extractTags(row.chunk().content());
+                if (tags != null && !tags.isEmpty()) {
+                    chunkService.insertTags(Map.of(row.id(), tags));
+                }
+                row.job().tagged();
+            } catch (Exception e) {
+                log.warn("Tagging of imported chunk_id={} failed: {}", row.id(), e.getMessage());
+                row.job().failed(1, "tagging of chunk " + row.id() + " failed: " + e.getMessage());
+            }
+            tagged.put(new Tagged(row, tags == null ? List.of() : tags));
+        }
+    }
+
+    private void embed(List<Tagged> batch) throws InterruptedException {
+        List<Embedded> rows = new ArrayList<>(batch.size());
+        for (Tagged row : batch) {
+            float[] vector = null;
+            try {
+                vector = yandexGptService.embedDocument(row.stored().chunk().content());
+            } catch (Exception e) {
+                log.warn("Embedding of imported chunk_id={} failed: {}", row.stored().id(), e.getMessage());
+                row.job().failed(1, "embedding of chunk " + row.stored().id() + " failed: " + e.getMessage());
+            }
+            rows.add(new Embedded(row, vector));
+        }
+
+        List<Embedded> withVectors = rows.stream().filter(row -> row.vector() != null).toList();
+        try {
+            if (!withVectors.isEmpty()) {
+                vectorCopyWriter.upsert(withVectors, row -> row.tagged().stored().id(), Embedded::vector);
+            }
+            withVectors.forEach(row -> row.job().embedded(1));
+        } catch (Exception e) {
+            log.warn("COPY of {} imported embeddings failed, writing one by one: {}", withVectors.size(), e.getMessage());
+            rows.replaceAll(this::saveEmbedding);
+        }
+        for (Embedded row : rows) {
+            embedded.put(row);
+        }
+    }
+
+    /**
+     * Row-by-row fallback for a failed COPY; a row that cannot be written goes on without its vector.
+     */
+    private Embedded saveEmbedding(Embedded row) {
+        if (row.vector() == null) {
+            return row;
+        }
+        long chunkId = row.tagged().stored().id();
+        try {
+            jdbcTemplate.update(EmbeddingService.UPSERT_EMBEDDING_SQL, chunkId, EmbeddingService.vectorToString(row.vector()));
+            row.job().embedded(1);
+            return row;
+        } catch (Exception e) {
+            row.job().failed(1, "saving embedding of chunk " + chunkId + " failed: " + e.getMessage());
+            return new Embedded(row.tagged(), null);
+        }
+    }
+
+    private void index(List<Embedded> batch) {
+        Map<Long, List<String>> tags = new HashMap<>();
+        for (Embedded row : batch) {
+            if (!row.tagged().tags().isEmpty()) {
+                tags.put(row.tagged().stored().id(), row.tagged().tags());
+            }
+        }
+        try {
+            if (!tags.isEmpty()) {
+                tagIndex.addTags(tags);
+            }
+        } catch (Exception e) {
+            log.warn("Indexing tags of {} imported chunks failed: {}", tags.size(), e.getMessage());
+            batch.stream()
+                    .filter(row -> tags.containsKey(row.tagged().stored().id()))
+                    .forEach(row -> row.job().failed(1, "indexing tags of chunk " + row.tagged().stored().id()
+                            + " failed: " + e.getMessage()));
+        }
+
+        for (Embedded row : batch) {
+            long chunkId = row.tagged().stored().id();
+            try {
+                if (row.vector() != null) {
+                    hnswChunkRetriever.upsert(chunkId, row.vector());
+                }
+            } catch (Exception e) {
+                row.job().failed(1, "indexing of chunk " + chunkId + " failed: " + e.getMessage());
+            }
+            row.job().indexed(1);
+        }
+    }
+
+    /**
+     * A batch whose handler throws is counted as failed and dropped, so its jobs still complete.
+     */
+    private <T extends InFlight> void run(String stage, BlockingQueue<T> queue, int batchSize, Stage<T> handler) {
+        List<T> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                handler.process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Bulk ingestion {} stage failed on a batch of {}", stage, batch.size(), e);
+                for (T chunk : batch) {
+                    chunk.job().failed(1, stage + " stage failed: " + e.getMessage());
+                    chunk.job().dropped(1);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        int pending = parsed.size() + stored.size() + tagged.size() + embedded.size();
+        if (pending > 0) {
+            log.warn("Bulk ingestion stopped with {} chunks in flight; inserted ones are left for the next backfill", pending);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Stage<T> {
+        void process(List<T> batch) throws Exception;
+    }
+
+    private interface InFlight {
+        ImportJob job();
+    }
+
+    private record Parsed(ImportJob job, Long fileId, String title, String url, String content) implements InFlight {
+    }
+
+    private record Stored(Parsed chunk, long id) implements InFlight {
+
+        public ImportJob job() {
+            return chunk.job();
+        }
+    }
+
+    private record Tagged(Stored stored, List<String> tags) implements InFlight {
+
+        public ImportJob job() {
+            return stored.job();
+        }
+    }
+
+    private record Embedded(Tagged tagged, float[] vector) implements InFlight {
+
+        public ImportJob job() {
+            return tagged.job();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.neoflex.studymate.services.chunk;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.neoflex.studymate.dto.ChunkCard;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded cache of {@link ChunkCard}s; misses are loaded in one query joining chunks, files and courses.
+ */
+@Slf4j
+@Component
+public class ChunkCardCache implements MeterBinder {
+
+    private static final String SELECT_CARDS =
+            "SELECT c.id, c.title_name, c.source_url, c.content, f.name AS file_name, co.name AS course_name " +
+                    "FROM dm.chunks c " +
+                    "LEFT JOIN dm.downloaded_files f ON f.id = c.id_file " +
+                    "LEFT JOIN dm.courses co ON co.id = f.course_id ";
+
+    private static final RowMapper<ChunkCard> CARD_MAPPER = (rs, rowNum) -> new ChunkCard(
+            rs.getLong("id"),
+            rs.getString("title_name"),
+            rs.getString("source_url"),
+            rs.getString("file_name"),
+            rs.getString("course_name"),
+            rs.getString("content"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long maxSize;
+    private final LoadingCache<Long, ChunkCard> cache;
+
+    public ChunkCardCache(JdbcTemplate jdbcTemplate, @Value("${app.chunk-cards.max-size}") long maxSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxSize = maxSize;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build(new CacheLoader<>() {
+                    @Override
+                    public ChunkCard load(Long id) {
+                        return loadCards(List.of(id)).get(id);
+                    }
+
+                    @Override
+                    public Map<Long, ChunkCard> loadAll(Set<? extends Long> ids) {
+                        return loadCards(ids);
+                    }
+                });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "chunk-cards");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        Thread.ofVirtual().name("chunk-cards-warmup").start(() -> {
+            try {
+                List<ChunkCard> cards = jdbcTemplate.query(SELECT_CARDS + "ORDER BY c.id DESC LIMIT ?", CARD_MAPPER, maxSize);
+                cards.forEach(card -> cache.put(card.id(), card));
+                log.info("Chunk card cache warmed with {} cards", cards.size());
+            } catch (Exception e) {
+                log.warn("Failed to warm chunk card cache: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Cards for the given ids in the same order; ids of deleted chunks are skipped.
+     */
+    public List<ChunkCard> getAll(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, ChunkCard> cards = cache.getAll(ids);
+        return ids.stream().map(cards::get).filter(Objects::nonNull).toList();
+    }
+
+    public void refresh(long chunkId) {
+        cache.refresh(chunkId);
+    }
+
+    public void invalidate(long chunkId) {
+        cache.invalidate(chunkId);
+    }
+
+    private Map<Long, ChunkCard> loadCards(Collection<? extends Long> ids) {
+        return jdbcTemplate.query(SELECT_CARDS + "WHERE c.id = ANY(?)",
+                        ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids.toArray())),
+                        CARD_MAPPER).stream()
+                .collect(Collectors.toMap(ChunkCard::id, Function.identity()));
+    }
+}
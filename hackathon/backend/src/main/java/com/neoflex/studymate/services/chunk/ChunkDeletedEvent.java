@@ -0,0 +1,4 @@
+package com.neoflex.studymate.services.chunk;
+
+public record ChunkDeletedEvent(Long chunkId) {
+}
@@ -0,0 +1,168 @@
+package com.neoflex.studymate.services.chunk;
+
+import com.neoflex.studymate.entities.Chunk;
+import com.neoflex.studymate.repositiries.ChunkRepository;
+import com.neoflex.studymate.services.bot.SemanticAnswerCache;
+import com.neoflex.studymate.services.yandex.YandexGptService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tags and embeds individually saved chunks in the background.
+ * Chunks that do not fit into the queue or fail keep their {@code dm.chunk_ingestion_pending} mark
+ * and are re-ingested by {@link #ingestPending()} on the next startup.
+ */
+@Slf4j
+@Service
+public class ChunkIngestionPipeline {
+
+    private final ChunkRepository chunkRepository;
+    private final ChunkService chunkService;
+    private final EmbeddingService embeddingService;
+    private final YandexGptService yandexGptService;
+    private final SemanticAnswerCache semanticAnswerCache;
+    private final ChunkCardCache chunkCardCache;
+    private final int workers;
+
+    private final BlockingQueue<Long> queue;
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("chunk-ingestion-", 0).factory());
+
+    public ChunkIngestionPipeline(ChunkRepository chunkRepository,
+                                  ChunkService chunkService,
+                                  EmbeddingService embeddingService,
+                                  YandexGptService yandexGptService,
+                                  SemanticAnswerCache semanticAnswerCache,
+                                  ChunkCardCache chunkCardCache,
+                                  @Value("${app.ingestion.queue-capacity}") int queueCapacity,
+                                  @Value("${app.ingestion.workers}") int workers) {
+        this.chunkRepository = chunkRepository;
+        this.chunkService = chunkService;
+        this.embeddingService = embeddingService;
+        this.yandexGptService = yandexGptService;
+        this.semanticAnswerCache = semanticAnswerCache;
+        this.chunkCardCache = chunkCardCache;
+        this.workers = workers;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    void start() {
+        for (int i = 0; i < workers; i++) {
+            executor.execute(this::drain);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChunkSaved(ChunkSavedEvent event) {
+        semanticAnswerCache.invalidateChunk(event.chunkId());
+        chunkCardCache.invalidate(event.chunkId());
+        submit(event.chunkId());
+    }
+
+    public void submit(Long chunkId) {
+        if (!queued.add(chunkId)) {
+            return;
+        }
+        if (!queue.offer(chunkId)) {
+            queued.remove(chunkId);
+            log.warn("Ingestion queue is full, chunk_id={} stays pending until the next startup", chunkId);
+        }
+    }
+
+    public int pendingCount() {
+        return queue.size();
+    }
+
+    private void drain() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Long chunkId;
+            try {
+                chunkId = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queued.remove(chunkId);
+            try {
+                process(chunkId);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Failed to ingest chunk_id={}, it stays pending until the next startup", chunkId, e);
+            }
+        }
+    }
+
+    /**
+     * Synchronously re-ingests chunks whose ingestion was dropped or failed before; called by the startup backfill.
+     */
+    public void ingestPending() throws InterruptedException {
+        List<Long> pending = chunkService.findPendingIngestion();
+        if (pending.isEmpty()) {
+            return;
+        }
+        log.info("Re-ingesting {} chunks left pending by earlier runs", pending.size());
+        int failed = 0;
+        for (Long chunkId : pending) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException("Re-ingestion interrupted");
+            }
+            try {
+                process(chunkId);
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                failed++;
+                log.error("Failed to re-ingest chunk_id={}", chunkId, e);
+            }
+        }
+        log.info("Re-ingestion completed, {} of {} chunks failed", failed, pending.size());
+    }
+
+    private void process(Long chunkId) throws InterruptedException {
+        Timestamp mark = chunkService.ingestionMark(chunkId);
+        Chunk chunk = chunkRepository.findById(chunkId).orElse(null);
+        if (chunk == null) {
+            log.info("Chunk_id={} was deleted before ingestion", chunkId);
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<String> tags = yandexGptService.extractTags(chunk.getContent());
+        // an empty list still replaces the tags of the previous text
+        chunkService.replaceTags(chunkId, tags == null ? List.of() : tags);
+        boolean embedded = embeddingService.embedChunk(chunkId, chunk.getContent());
+        chunkCardCache.refresh(chunkId);
+        semanticAnswerCache.invalidateChunk(chunkId);
+        if (embedded) {
+            chunkService.completeIngestion(chunkId, mark);
+        }
+
+        log.info("Ingested chunk_id={} ({} tags, embedded: {}) in {} ms",
+                chunkId, tags == null ? 0 : tags.size(), embedded, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        if (!queue.isEmpty()) {
+            log.warn("Ingestion stopped with {} chunks queued, they are re-ingested on the next startup", queue.size());
+        }
+    }
+}
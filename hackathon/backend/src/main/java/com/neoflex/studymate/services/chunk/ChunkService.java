@@ -1,35 +1,73 @@
 package com.neoflex.studymate.services.chunk;
 
 import com.neoflex.studymate.entities.Chunk;
-import com.neoflex.studymate.entities.Tag;
-import com.neoflex.studymate.repositiries.TagRepository;
 import com.neoflex.studymate.repositiries.ChunkRepository;
+import com.neoflex.studymate.services.bot.SemanticAnswerCache;
+import com.neoflex.studymate.services.search.HnswChunkRetriever;
+import com.neoflex.studymate.services.search.TagIndex;
 import com.neoflex.studymate.services.yandex.YandexGptService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.HashSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class ChunkService {
 
     private final ChunkRepository chunkRepository;
-    private final EmbeddingService embeddingService;
-    private final TagRepository tagRepository;
+    private final TagDictionary tagDictionary;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
     private final YandexGptService yandexGptService;
+    private final HnswChunkRetriever hnswChunkRetriever;
+    private final TagIndex tagIndex;
+    private final ChunkCardCache chunkCardCache;
+    private final SemanticAnswerCache semanticAnswerCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BackfillCheckpoints checkpoints;
 
+    private static final String TAGGING_JOB = "chunk-tags";
+
+    @Value("${app.tagging.batch-size}")
+    private int taggingBatchSize;
+
+    @Value("${app.tagging.lookback}")
+    private long taggingLookback;
+
+    /**
+     * Saves the chunk and hands it to {@link ChunkIngestionPipeline} once the transaction commits;
+     * tags and embedding are filled in asynchronously for this chunk only. The chunk stays marked in
+     * {@code dm.chunk_ingestion_pending} until that succeeds, so an updated chunk whose ingestion was dropped
+     * is re-ingested by the startup backfill instead of keeping the tags and embedding of its old text.
+     */
+    @Transactional
     public Chunk saveChunk(Chunk chunk) {
         Chunk saved = chunkRepository.save(chunk);
-        embeddingService.fillChunkEmbeddings();
-        addTagsToEmptyChunks();
+        jdbcTemplate.update("INSERT INTO dm.chunk_ingestion_pending(chunk_id) VALUES (?) " +
+                "ON CONFLICT (chunk_id) DO UPDATE SET marked_at = now()", saved.getId());
+        eventPublisher.publishEvent(new ChunkSavedEvent(saved.getId()));
         return saved;
     }
 
+    /**
+     * Deletes the chunk; the in-memory indexes and caches drop it once the transaction commits.
+     */
     @Transactional
     public void deleteChunk(Long chunkId) {
         Chunk chunk = chunkRepository.findById(chunkId)
@@ -40,38 +78,166 @@ public class ChunkService {
         }
 
         chunkRepository.delete(chunk);
+        eventPublisher.publishEvent(new ChunkDeletedEvent(chunkId));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChunkDeleted(ChunkDeletedEvent event) {
+        hnswChunkRetriever.remove(event.chunkId());
+        tagIndex.remove(event.chunkId());
+        chunkCardCache.invalidate(event.chunkId());
+        semanticAnswerCache.invalidateChunk(event.chunkId());
     }
 
     public List<Chunk> findByTags(List<String> tags) {
         return chunkRepository.findByTagsIgnoreCase(tags);
     }
 
-    @Transactional
-    public void addTagsToEmptyChunks() {
-        List<Chunk> chunks = chunkRepository.findAll();
-        for (Chunk chunk : chunks) {
-            List<String> extractedTags = yandexGptService.extractTags(chunk.getContent());
-            if (extractedTags != null && !extractedTags.isEmpty()) {
-                Set<Tag> tags = extractedTags.stream()
-                        .map(title -> tagRepository.findByName(title)
-                                .orElseGet(() -> {
-                                    Tag tag = new Tag();
-                                    tag.setName(title);
-                                    return tagRepository.save(tag);
-                                }))
-                        .collect(Collectors.toSet());
-
-                if (chunk.getTags() == null) {
-                    chunk.setTags(new HashSet<>());
-                }
+    /**
+     * Tags chunks that have no tags yet, page by page; links of each page are written in one batch and committed together.
+     */
+    public void addTagsToEmptyChunks() throws InterruptedException {
+        addTagsToEmptyChunks(new BackfillProgress());
+    }
 
-                chunk.getTags().addAll(tags);
-                chunkRepository.save(chunk);
+    /**
+     * Chunks up to the persisted watermark are not sent to the model again, even when it found no tags for them.
+     * The watermark stops before the first chunk whose request failed, so that chunk is retried on the next run.
+     * The scan starts {@code app.tagging.lookback} ids below the watermark: ids come from a sequence, so a chunk
+     * whose transaction committed after a higher id was tagged would otherwise be skipped for good. Untagged chunks
+     * in that window are sent to the model again on each run.
+     */
+    public void addTagsToEmptyChunks(BackfillProgress progress) throws InterruptedException {
+        long watermark = checkpoints.load(TAGGING_JOB);
+        long cursor = Math.max(0, watermark - taggingLookback);
+        progress.start(countUntaggedChunks(cursor));
+        log.info("Starting tagging of untagged chunks after chunk_id={} (watermark chunk_id={})...", cursor, watermark);
+        boolean failed = false;
+        int tagged = 0;
+        List<UntaggedChunk> page;
+        while (!(page = getUntaggedChunks(cursor, taggingBatchSize)).isEmpty()) {
+            Map<Long, List<String>> extracted = new LinkedHashMap<>();
+            for (UntaggedChunk chunk : page) {
+                try {
+                    List<String> tags = yandexGptService.extractTags(chunk.content());
+                    if (tags != null && !tags.isEmpty()) {
+                        extracted.put(chunk.id(), tags);
+                    }
+                    if (!failed) {
+                        watermark = Math.max(watermark, chunk.id());
+                    }
+                    progress.processed(1);
+                } catch (Exception e) {
+                    log.error("Failed to extract tags for chunk_id={}", chunk.id(), e);
+                    failed = true;
+                    progress.failed(1);
+                }
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException("Tagging interrupted");
             }
+
+            List<long[]> links = toLinks(extracted);
+            transactionTemplate.executeWithoutResult(status -> insertLinks(links));
+            tagIndex.addTags(extracted);
+            checkpoints.save(TAGGING_JOB, watermark);
+            tagged += extracted.size();
+            cursor = page.get(page.size() - 1).id();
+            log.info("Tagging progress: {} chunks tagged, cursor chunk_id={}, watermark chunk_id={}", tagged, cursor, watermark);
         }
+        log.info("Tagging completed: {} chunks tagged, {} tags known", tagged, tagDictionary.size());
+    }
+
+    /**
+     * Links tags to chunks without updating {@link TagIndex}; bulk ingestion does that in its index stage.
+     */
+    void insertTags(Map<Long, List<String>> tagsByChunk) {
+        List<long[]> links = toLinks(tagsByChunk);
+        transactionTemplate.executeWithoutResult(status -> insertLinks(links));
+    }
+
+    public List<Long> findPendingIngestion() {
+        return jdbcTemplate.queryForList(
+                "SELECT chunk_id FROM dm.chunk_ingestion_pending ORDER BY chunk_id", Long.class);
+    }
+
+    Timestamp ingestionMark(long chunkId) {
+        return jdbcTemplate.query("SELECT marked_at FROM dm.chunk_ingestion_pending WHERE chunk_id = ?",
+                rs -> rs.next() ? rs.getTimestamp(1) : null, chunkId);
+    }
+
+    /**
+     * Clears the ingestion mark read before processing; a newer mark from a later save is kept.
+     */
+    void completeIngestion(long chunkId, Timestamp mark) {
+        if (mark != null) {
+            jdbcTemplate.update("DELETE FROM dm.chunk_ingestion_pending WHERE chunk_id = ? AND marked_at = ?",
+                    chunkId, mark);
+        }
+    }
+
+    private long countUntaggedChunks(long afterId) {
+        Long count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM dm.chunks c " +
+                        "WHERE c.id > ? AND NOT EXISTS (SELECT 1 FROM dm.chunk_tags t WHERE t.chunk_id = c.id)",
+                Long.class, afterId);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Replaces the tags of a single chunk, e.g. after its content changed.
+     */
+    public void replaceTags(Long chunkId, List<String> tagNames) {
+        List<long[]> links = toLinks(Map.of(chunkId, tagNames));
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM dm.chunk_tags WHERE chunk_id = ?", chunkId);
+            insertLinks(links);
+        });
+        tagIndex.setTags(chunkId, tagNames);
+    }
+
+    private List<UntaggedChunk> getUntaggedChunks(long afterId, int limit) {
+        return jdbcTemplate.query(
+                "SELECT c.id, c.content " +
+                        "FROM dm.chunks c " +
+                        "WHERE c.id > ? AND NOT EXISTS (SELECT 1 FROM dm.chunk_tags t WHERE t.chunk_id = c.id) " +
+                        "ORDER BY c.id " +
+                        "LIMIT ?",
+                (rs, rowNum) -> new UntaggedChunk(rs.getLong("id"), rs.getString("content")),
+                afterId, limit
+        );
+    }
+
+    private List<long[]> toLinks(Map<Long, List<String>> tagsByChunk) {
+        Set<String> names = new LinkedHashSet<>();
+        tagsByChunk.values().forEach(names::addAll);
+        Map<String, Long> tagIds = tagDictionary.resolve(names);
+
+        List<long[]> links = new ArrayList<>();
+        tagsByChunk.forEach((chunkId, tags) -> tags.stream()
+                .map(tagIds::get)
+                .filter(Objects::nonNull)
+                .distinct()
+                .forEach(tagId -> links.add(new long[]{chunkId, tagId})));
+        return links;
+    }
+
+    private void insertLinks(List<long[]> links) {
+        if (links.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO dm.chunk_tags(chunk_id, tag_id) VALUES (?, ?) ON CONFLICT DO NOTHING",
+                links, links.size(), (ps, link) -> {
+                    ps.setLong(1, link[0]);
+                    ps.setLong(2, link[1]);
+                });
     }
 
     public List<Chunk> findAllChunks() {
         return chunkRepository.findAll();
     }
+
+    private record UntaggedChunk(long id, String content) {
+    }
 }
@@ -1,72 +1,261 @@
 package com.neoflex.studymate.services.chunk;
 
+import com.neoflex.studymate.services.search.HnswChunkRetriever;
 import com.neoflex.studymate.services.yandex.YandexGptService;
+import com.neoflex.studymate.utils.TokenBucket;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class EmbeddingService {
 
+    private static final String BACKFILL_JOB = "chunk-embeddings";
+
+    static final String UPSERT_EMBEDDING_SQL =
+            "INSERT INTO dm.chunks_vectors(chunk_id, embedding) VALUES (?, ?::vector) " +
+                    "ON CONFLICT (chunk_id) DO UPDATE SET embedding = EXCLUDED.embedding";
+
     private final JdbcTemplate jdbcTemplate;
     private final YandexGptService yandexGptService;
+    private final HnswChunkRetriever hnswChunkRetriever;
+    private final BackfillCheckpoints checkpoints;
+    private final VectorCopyWriter vectorCopyWriter;
+
+    @Value("${app.embedding.backfill.concurrency}")
+    private int concurrency;
+
+    @Value("${app.embedding.backfill.rate-per-second}")
+    private double ratePerSecond;
+
+    @Value("${app.embedding.backfill.batch-size}")
+    private int batchSize;
+
+    @Value("${app.embedding.backfill.max-retries}")
+    private int maxRetries;
+
+    @Value("${app.embedding.backfill.retry-backoff-ms}")
+    private long retryBackoffMs;
+
+    @Value("${app.embedding.backfill.binary-copy}")
+    private boolean binaryCopy;
+
+    private TokenBucket rateLimiter;
+
+    @PostConstruct
+    void initRateLimiter() {
+        rateLimiter = new TokenBucket(ratePerSecond, Math.max(1, ratePerSecond));
+    }
 
-    public void fillChunkEmbeddings() {
-        log.info("Starting embedding fill for chunks...");
+    public BackfillReport fillChunkEmbeddings() throws InterruptedException {
+        return fillChunkEmbeddings(new BackfillProgress());
+    }
+
+    /**
+     * Embeds chunks without a vector, resuming after the checkpoint of an interrupted run.
+     * An interrupt stops the fill between pages with {@link InterruptedException}; the checkpoint is kept.
+     */
+    public BackfillReport fillChunkEmbeddings(BackfillProgress progress) throws InterruptedException {
+        long cursor = checkpoints.load(BACKFILL_JOB);
+        progress.start(countChunksWithoutEmbeddings(cursor));
+        log.info("Starting embedding fill for chunks after chunk_id={}...", cursor);
+
+        long start = System.nanoTime();
+        int embedded = 0;
+        int failed = 0;
+        Semaphore permits = new Semaphore(concurrency);
 
-        List<Map<String, Object>> chunks = getChunksWithoutEmbeddings();
-        log.info("Found {} chunks without embeddings", chunks.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<PendingChunk> page;
+            while (!(page = getChunksWithoutEmbeddings(cursor, batchSize)).isEmpty()) {
+                List<Future<EmbeddedChunk>> futures = new ArrayList<>(page.size());
+                for (PendingChunk chunk : page) {
+                    futures.add(executor.submit(() -> embedLimited(chunk, permits)));
+                }
 
-        chunks.forEach(this::processChunk);
+                List<EmbeddedChunk> results = new ArrayList<>(page.size());
+                try {
+                    for (Future<EmbeddedChunk> future : futures) {
+                        EmbeddedChunk result = await(future);
+                        if (result != null) {
+                            results.add(result);
+                        } else {
+                            failed++;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    // the rest of the page is embedded again on the next run
+                    executor.shutdownNow();
+                    throw e;
+                }
 
-        log.info("Embedding fill completed.");
+                int saved = saveEmbeddings(results);
+                progress.processed(saved);
+                progress.failed(page.size() - saved);
+                embedded += saved;
+                failed += results.size() - saved;
+                cursor = page.get(page.size() - 1).id();
+                checkpoints.save(BACKFILL_JOB, cursor);
+                log.info("Embedding fill progress: {} embedded, {} failed, checkpoint chunk_id={}", embedded, failed, cursor);
+            }
+        }
+
+        checkpoints.clear(BACKFILL_JOB);
+        BackfillReport report = new BackfillReport(embedded, failed, System.nanoTime() - start);
+        log.info("Embedding fill completed: {} embedded, {} failed in {} s ({} chunks/s)",
+                report.embedded(), report.failed(), String.format("%.1f", report.seconds()),
+                String.format("%.2f", report.chunksPerSecond()));
+        return report;
     }
 
-    private List<Map<String, Object>> getChunksWithoutEmbeddings() {
-        return jdbcTemplate.queryForList(
+    /**
+     * Embeds a single chunk and upserts its vector; used by the incremental ingestion path.
+     */
+    public boolean embedChunk(long chunkId, String content) throws InterruptedException {
+        EmbeddedChunk result = embedWithRetry(new PendingChunk(chunkId, content));
+        return result != null && saveEmbeddings(List.of(result)) == 1;
+    }
+
+    private long countChunksWithoutEmbeddings(long afterId) {
+        Long count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM dm.chunks p " +
+                        "WHERE p.id > ? AND NOT EXISTS (SELECT 1 FROM dm.chunks_vectors e WHERE e.chunk_id = p.id)",
+                Long.class, afterId);
+        return count == null ? 0 : count;
+    }
+
+    private List<PendingChunk> getChunksWithoutEmbeddings(long afterId, int limit) {
+        return jdbcTemplate.query(
                 "SELECT p.id, p.content " +
                         "FROM dm.chunks p " +
                         "LEFT JOIN dm.chunks_vectors e ON p.id = e.chunk_id " +
-                        "WHERE e.chunk_id IS NULL"
+                        "WHERE e.chunk_id IS NULL AND p.id > ? " +
+                        "ORDER BY p.id " +
+                        "LIMIT ?",
+                (rs, rowNum) -> new PendingChunk(rs.getLong("id"), rs.getString("content")),
+                afterId, limit
         );
     }
 
-    private void processChunk(Map<String, Object> chunk) {
-        Long chunkId = ((Number) chunk.get("id")).longValue();
-        String text = (String) chunk.get("content");
+    private EmbeddedChunk embedLimited(PendingChunk chunk, Semaphore permits) throws InterruptedException {
+        permits.acquire();
+        try {
+            return embedWithRetry(chunk);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private EmbeddedChunk embedWithRetry(PendingChunk chunk) throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            rateLimiter.acquire();
+            try {
+                return new EmbeddedChunk(chunk.id(), yandexGptService.embedDocument(chunk.content()));
+            } catch (Exception e) {
+                if (attempt >= maxRetries) {
+                    log.error("Failed to fill embedding for chunk_id={} after {} attempts", chunk.id(), attempt + 1, e);
+                    return null;
+                }
+                long backoff = (retryBackoffMs << attempt) + ThreadLocalRandom.current().nextLong(retryBackoffMs + 1);
+                log.warn("Embedding request for chunk_id={} failed, retrying in {} ms: {}", chunk.id(), backoff, e.getMessage());
+                TimeUnit.MILLISECONDS.sleep(backoff);
+            }
+        }
+    }
 
+    private EmbeddedChunk await(Future<EmbeddedChunk> future) throws InterruptedException {
         try {
-            List<Double> vectorList = yandexGptService.getEmbedding(text);
-            double[] vector = toArray(vectorList);
+            return future.get();
+        } catch (ExecutionException e) {
+            log.error("Embedding worker failed", e.getCause());
+            return null;
+        }
+    }
 
-            saveEmbedding(chunkId, vector);
-            log.info("Filled embedding for chunk_id={}", chunkId);
+    private int saveEmbeddings(List<EmbeddedChunk> chunks) {
+        if (chunks.isEmpty()) {
+            return 0;
+        }
+        int saved = 0;
+        try {
+            if (binaryCopy && chunks.size() > 1) {
+                vectorCopyWriter.upsert(chunks, EmbeddedChunk::id, EmbeddedChunk::vector);
+            } else {
+                jdbcTemplate.batchUpdate(UPSERT_EMBEDDING_SQL, chunks, chunks.size(), (ps, chunk) -> {
+                    ps.setLong(1, chunk.id());
+                    ps.setString(2, vectorToString(chunk.vector()));
+                });
+            }
+            saved = chunks.size();
+            chunks.forEach(chunk -> hnswChunkRetriever.upsert(chunk.id(), chunk.vector()));
         } catch (Exception e) {
-            log.error("Failed to fill embedding for chunk_id={}", chunkId, e);
+            log.warn("Batch write of {} embeddings failed, writing one by one: {}", chunks.size(), e.getMessage());
+            for (EmbeddedChunk chunk : chunks) {
+                try {
+                    saveEmbedding(chunk.id(), chunk.vector());
+                    hnswChunkRetriever.upsert(chunk.id(), chunk.vector());
+                    saved++;
+                } catch (Exception rowError) {
+                    log.error("Failed to save embedding for chunk_id={}", chunk.id(), rowError);
+                }
+            }
         }
+        return saved;
     }
 
-    private void saveEmbedding(Long chunkId, double[] vector) {
-        jdbcTemplate.update(
-                "INSERT INTO dm.chunks_vectors(chunk_id, embedding) VALUES (?, ?::vector)",
-                chunkId, vectorToString(vector)
-        );
+    private void saveEmbedding(Long chunkId, float[] vector) {
+        jdbcTemplate.update(UPSERT_EMBEDDING_SQL, chunkId, vectorToString(vector));
     }
 
-    private String vectorToString(double[] vector) {
-        return "[" + java.util.Arrays.stream(vector)
-                .mapToObj(String::valueOf)
-                .collect(Collectors.joining(",")) + "]";
+    public static String vectorToString(float[] vector) {
+        StringBuilder sb = new StringBuilder(vector.length * 12).append('[');
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(vector[i]);
+        }
+        return sb.append(']').toString();
     }
 
-    private double[] toArray(List<Double> list) {
-        return list.stream().mapToDouble(Double::doubleValue).toArray();
+    public static float[] parseVector(String text) {
+        String[] parts = text.substring(1, text.length() - 1).split(",");
+        float[] vector = new float[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            vector[i] = Float.parseFloat(parts[i]);
+        }
+        return vector;
+    }
+
+    private record PendingChunk(long id, String content) {
+    }
+
+    private record EmbeddedChunk(long id, float[] vector) {
+    }
+
+    public record BackfillReport(int embedded, int failed, long elapsedNanos) {
+
+        public double seconds() {
+            return elapsedNanos / 1e9;
+        }
+
+        public double chunksPerSecond() {
+            return elapsedNanos == 0 ? 0 : embedded / seconds();
+        }
     }
-}
\ No newline at end of file
+}
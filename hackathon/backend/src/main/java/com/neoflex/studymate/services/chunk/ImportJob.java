@@ -0,0 +1,112 @@
+package com.neoflex.studymate.services.chunk;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of one bulk chunk import, updated by every stage of {@link BulkIngestionPipeline}.
+ */
+public class ImportJob {
+
+    public enum State {
+        RECEIVING,
+        PROCESSING,
+        COMPLETED
+    }
+
+    private static final int MAX_ERRORS = 20;
+
+    private final String id;
+    private final Instant startedAt = Instant.now();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong inserted = new AtomicLong();
+    private final AtomicLong tagged = new AtomicLong();
+    private final AtomicLong embedded = new AtomicLong();
+    private final AtomicLong indexed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    /** Chunks that left the pipeline, indexed or dropped after a failed insert. */
+    private final AtomicLong done = new AtomicLong();
+    private final List<String> errors = new CopyOnWriteArrayList<>();
+
+    private volatile boolean receiving = true;
+    private volatile Instant finishedAt;
+
+    ImportJob(String id) {
+        this.id = id;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    void received() {
+        received.incrementAndGet();
+    }
+
+    void rejected(long line, String reason) {
+        rejected.incrementAndGet();
+        error("line " + line + ": " + reason);
+    }
+
+    void inserted(int count) {
+        inserted.addAndGet(count);
+    }
+
+    void tagged() {
+        tagged.incrementAndGet();
+    }
+
+    void embedded(int count) {
+        embedded.addAndGet(count);
+    }
+
+    void failed(int count, String reason) {
+        failed.addAndGet(count);
+        error(reason);
+    }
+
+    void indexed(int count) {
+        indexed.addAndGet(count);
+        done(count);
+    }
+
+    void dropped(int count) {
+        done(count);
+    }
+
+    void receivingFinished() {
+        receiving = false;
+        checkCompleted();
+    }
+
+    private void done(int count) {
+        done.addAndGet(count);
+        checkCompleted();
+    }
+
+    private synchronized void checkCompleted() {
+        if (!receiving && finishedAt == null && done.get() >= received.get() - rejected.get()) {
+            finishedAt = Instant.now();
+        }
+    }
+
+    private void error(String message) {
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(message);
+        }
+    }
+
+    public Progress progress() {
+        State state = receiving ? State.RECEIVING : finishedAt == null ? State.PROCESSING : State.COMPLETED;
+        return new Progress(id, state, received.get(), rejected.get(), inserted.get(), tagged.get(), embedded.get(),
+                indexed.get(), failed.get(), List.copyOf(errors), startedAt, finishedAt);
+    }
+
+    public record Progress(String jobId, State state, long received, long rejected, long inserted, long tagged,
+                           long embedded, long indexed, long failed, List<String> errors,
+                           Instant startedAt, Instant finishedAt) {
+    }
+}
@@ -0,0 +1,23 @@
+package com.neoflex.studymate.services.chunk;
+
+/**
+ * Thrown when a whole chunk import is refused before any of its lines are processed.
+ */
+public class ImportRejectedException extends RuntimeException {
+
+    public enum Reason {
+        TOO_LARGE,
+        NO_FILE_ID
+    }
+
+    private final Reason reason;
+
+    public ImportRejectedException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public Reason reason() {
+        return reason;
+    }
+}
@@ -0,0 +1,68 @@
+package com.neoflex.studymate.services.chunk;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process tag name to id mapping; unknown names are inserted in one batch and read back in one query.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TagDictionary {
+
+    private static final int MAX_TAG_LENGTH = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<String, Long> ids = new ConcurrentHashMap<>();
+
+    public Map<String, Long> resolve(Collection<String> names) {
+        Map<String, Long> resolved = new LinkedHashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        for (String name : names) {
+            if (name == null || name.isBlank() || name.length() > MAX_TAG_LENGTH) {
+                continue;
+            }
+            Long id = ids.get(name);
+            if (id != null) {
+                resolved.put(name, id);
+            } else {
+                missing.add(name);
+            }
+        }
+        if (!missing.isEmpty()) {
+            resolved.putAll(insertMissing(missing));
+        }
+        return resolved;
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    private Map<String, Long> insertMissing(Set<String> names) {
+        List<String> batch = List.copyOf(names);
+        jdbcTemplate.batchUpdate("INSERT INTO dm.tags(name) VALUES (?) ON CONFLICT (name) DO NOTHING",
+                batch, batch.size(), (ps, name) -> ps.setString(1, name));
+
+        Map<String, Long> loaded = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT id, name FROM dm.tags WHERE name = ANY(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", batch.toArray())),
+                rs -> {
+                    loaded.put(rs.getString("name"), rs.getLong("id"));
+                });
+        ids.putAll(loaded);
+        log.debug("Resolved {} new tags, dictionary size {}", loaded.size(), ids.size());
+        return loaded;
+    }
+}
@@ -0,0 +1,120 @@
+package com.neoflex.studymate.services.chunk;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bulk upsert of embeddings into {@code dm.chunks_vectors}. Rows are streamed with {@code COPY ... (FORMAT binary)}
+ * in pgvector's binary representation into a temporary staging table and merged with a single
+ * {@code INSERT ... ON CONFLICT}, so neither side formats or parses decimal text.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class VectorCopyWriter {
+
+    private static final byte[] COPY_SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String CREATE_STAGING_SQL =
+            "CREATE TEMP TABLE IF NOT EXISTS chunks_vectors_staging (chunk_id bigint, embedding vector) ON COMMIT DELETE ROWS";
+    private static final String COPY_SQL =
+            "COPY chunks_vectors_staging (chunk_id, embedding) FROM STDIN (FORMAT binary)";
+    private static final String MERGE_SQL =
+            "INSERT INTO dm.chunks_vectors(chunk_id, embedding) " +
+                    "SELECT DISTINCT ON (chunk_id) chunk_id, embedding FROM chunks_vectors_staging ORDER BY chunk_id " +
+                    "ON CONFLICT (chunk_id) DO UPDATE SET embedding = EXCLUDED.embedding";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Upserts the vectors of all rows in one transaction and returns the number of rows written.
+     */
+    public <T> int upsert(List<T> rows, ToLongFunction<T> chunkId, Function<T, float[]> vector) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        Integer written = transactionTemplate.execute(status -> jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_STAGING_SQL);
+            }
+            copy(connection.unwrap(PGConnection.class), rows, chunkId, vector);
+            try (Statement statement = connection.createStatement()) {
+                return statement.executeUpdate(MERGE_SQL);
+            }
+        }));
+        log.debug("Copied {} vectors in {} ms", rows.size(), (System.nanoTime() - start) / 1_000_000);
+        return written == null ? 0 : written;
+    }
+
+    private <T> void copy(PGConnection connection, List<T> rows, ToLongFunction<T> chunkId,
+                          Function<T, float[]> vector) throws SQLException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        CopyIn copyIn = connection.getCopyAPI().copyIn(COPY_SQL);
+        try {
+            buffer.put(COPY_SIGNATURE).putInt(0).putInt(0);
+            for (T row : rows) {
+                float[] values = vector.apply(row);
+                if (buffer.remaining() < rowSize(values.length)) {
+                    flush(copyIn, buffer);
+                    if (buffer.capacity() < rowSize(values.length)) {
+                        buffer = ByteBuffer.allocate(rowSize(values.length));
+                    }
+                }
+                encodeRow(buffer, chunkId.applyAsLong(row), values);
+            }
+            if (buffer.remaining() < Short.BYTES) {
+                flush(copyIn, buffer);
+            }
+            buffer.putShort((short) -1);
+            flush(copyIn, buffer);
+            copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private static void flush(CopyIn copyIn, ByteBuffer buffer) throws SQLException {
+        copyIn.writeToCopy(buffer.array(), 0, buffer.position());
+        buffer.clear();
+    }
+
+    static int rowSize(int dimensions) {
+        return Short.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES + vectorSize(dimensions);
+    }
+
+    /**
+     * One binary COPY tuple: {@code bigint} chunk id and a pgvector value (int16 dimensions, int16 unused,
+     * then big-endian float4 values).
+     */
+    static void encodeRow(ByteBuffer buffer, long chunkId, float[] vector) {
+        buffer.putShort((short) 2);
+        buffer.putInt(Long.BYTES).putLong(chunkId);
+        buffer.putInt(vectorSize(vector.length));
+        buffer.putShort((short) vector.length).putShort((short) 0);
+        for (float value : vector) {
+            buffer.putFloat(value);
+        }
+    }
+
+    private static int vectorSize(int dimensions) {
+        return 2 * Short.BYTES + dimensions * Float.BYTES;
+    }
+}
@@ -0,0 +1,15 @@
+package com.neoflex.studymate.services.search;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ChunkRetriever {
+
+    boolean isAvailable();
+
+    /**
+     * Returns up to {@code limit} chunks closest to the query by cosine similarity, best first.
+     * A {@code null} candidate set means the whole corpus.
+     */
+    List<ScoredChunk> findNearest(float[] queryEmbedding, Collection<Long> candidateIds, int limit);
+}
@@ -0,0 +1,198 @@
+package com.neoflex.studymate.services.search;
+
+import com.neoflex.studymate.services.chunk.EmbeddingService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class HnswChunkRetriever implements ChunkRetriever {
+
+    private static final int DIMENSION = 256;
+    private static final double REBUILD_FRAGMENTATION = 0.3;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.vector-index.enabled}")
+    private boolean enabled;
+
+    @Value("${app.vector-index.m}")
+    private int m;
+
+    @Value("${app.vector-index.ef-construction}")
+    private int efConstruction;
+
+    @Value("${app.vector-index.ef-search}")
+    private int efSearch;
+
+    @Value("${app.vector-index.quantization}")
+    private String quantization;
+
+    @Value("${app.vector-index.exact-scan-threshold}")
+    private int exactScanThreshold;
+
+    @Value("${app.vector-index.recall-check-samples}")
+    private int recallCheckSamples;
+
+    private volatile HnswIndex index;
+    private volatile HnswIndex staging;
+    private volatile boolean ready;
+    private final AtomicBoolean building = new AtomicBoolean();
+    /** Chunks removed while a rebuild scans the table; the scan may still read them from its snapshot. */
+    private final Set<Long> removedDuringRebuild = ConcurrentHashMap.newKeySet();
+    /** Writers hold the read lock from reading index and staging until they are applied; swapping them takes the write lock. */
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (enabled) {
+            rebuildAsync();
+        }
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return ready;
+    }
+
+    @Override
+    public List<ScoredChunk> findNearest(float[] queryEmbedding, Collection<Long> candidateIds, int limit) {
+        HnswIndex current = index;
+        if (candidateIds == null) {
+            return current.search(queryEmbedding, limit, id -> true);
+        }
+        if (candidateIds.size() <= exactScanThreshold) {
+            return current.exactSearch(queryEmbedding, limit, candidateIds);
+        }
+        Set<Long> allowed = candidateIds instanceof Set<Long> set ? set : new HashSet<>(candidateIds);
+        return current.search(queryEmbedding, limit, allowed::contains);
+    }
+
+    public void upsert(long chunkId, float[] embedding) {
+        swapLock.readLock().lock();
+        try {
+            HnswIndex current = index;
+            HnswIndex next = staging;
+            if (next != null) {
+                removedDuringRebuild.remove(chunkId);
+            }
+            if (next != null && next != current) {
+                next.add(chunkId, embedding);
+            }
+            if (current != null) {
+                current.add(chunkId, embedding);
+                rebuildIfFragmented(current);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    public void remove(long chunkId) {
+        swapLock.readLock().lock();
+        try {
+            HnswIndex current = index;
+            HnswIndex next = staging;
+            if (next != null) {
+                removedDuringRebuild.add(chunkId);
+            }
+            if (next != null && next != current) {
+                next.remove(chunkId);
+            }
+            if (current != null && current.remove(chunkId)) {
+                rebuildIfFragmented(current);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    public double measureRecall(int samples, int k) {
+        HnswIndex current = index;
+        return current == null ? 0 : current.measureRecall(samples, k);
+    }
+
+    private void rebuildIfFragmented(HnswIndex current) {
+        if (current.fragmentation() > REBUILD_FRAGMENTATION) {
+            rebuildAsync();
+        }
+    }
+
+    private void rebuildAsync() {
+        if (!building.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofVirtual().name("hnsw-index-build").start(() -> {
+            try {
+                rebuild();
+            } catch (Exception e) {
+                swap(index, null);
+                log.error("Failed to build in-memory vector index, falling back to Postgres", e);
+            } finally {
+                building.set(false);
+            }
+        });
+    }
+
+    private void rebuild() {
+        long start = System.nanoTime();
+        HnswIndex fresh = new HnswIndex(DIMENSION, m, efConstruction, efSearch, "int8".equalsIgnoreCase(quantization));
+        swapLock.writeLock().lock();
+        try {
+            removedDuringRebuild.clear();
+            staging = fresh;
+            if (index == null) {
+                index = fresh;
+            }
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+
+        jdbcTemplate.query("SELECT chunk_id, embedding::text AS embedding FROM dm.chunks_vectors",
+                rs -> {
+                    fresh.addIfAbsent(rs.getLong("chunk_id"), EmbeddingService.parseVector(rs.getString("embedding")));
+                });
+        // removals that raced with the scan go straight to fresh from here on, earlier ones are replayed
+        removedDuringRebuild.forEach(fresh::remove);
+        swap(fresh, null);
+        ready = true;
+        log.info("In-memory vector index built with {} vectors ({} bytes each) in {} ms (M={}, efConstruction={}, efSearch={})",
+                fresh.size(), fresh.bytesPerVector(), (System.nanoTime() - start) / 1_000_000, m, efConstruction, efSearch);
+
+        if (recallCheckSamples > 0) {
+            log.info("In-memory vector index recall@10 vs brute force: {}", fresh.measureRecall(recallCheckSamples, 10));
+        }
+    }
+
+    /**
+     * Publishes both references at once, so no writer sees the new index next to the old staging or the reverse.
+     */
+    private void swap(HnswIndex nextIndex, HnswIndex nextStaging) {
+        swapLock.writeLock().lock();
+        try {
+            removedDuringRebuild.clear();
+            index = nextIndex;
+            staging = nextStaging;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+}
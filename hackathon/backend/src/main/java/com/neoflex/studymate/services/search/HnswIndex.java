@@ -0,0 +1,458 @@
+package com.neoflex.studymate.services.search;
+
+import com.neoflex.studymate.utils.VectorMath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
+
+/**
+ * Hierarchical navigable small world graph over cosine similarity.
+ * Vectors are normalized on insert and kept in one contiguous {@code float[]}, so distance is {@code 1 - dot}.
+ * In quantized mode they are stored as int8 codes with a per-vector scale instead, a quarter of the memory.
+ * Removed chunks stay in the graph as tombstones and are only skipped in results.
+ */
+final class HnswIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final Comparator<Candidate> NEAREST_FIRST = Comparator.comparingDouble(Candidate::distance);
+
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final int efSearch;
+    private final boolean quantized;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> nodesByChunkId = new HashMap<>();
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    private float[] vectors;
+    private byte[] codes;
+    private float[] scales;
+    private long[] chunkIds;
+    private int[][][] links;
+    private boolean[] deleted;
+    private int size;
+    private int deletedCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    HnswIndex(int dimension, int m, int efConstruction, int efSearch) {
+        this(dimension, m, efConstruction, efSearch, false);
+    }
+
+    HnswIndex(int dimension, int m, int efConstruction, int efSearch, boolean quantized) {
+        this.dimension = dimension;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.quantized = quantized;
+        if (quantized) {
+            this.codes = new byte[INITIAL_CAPACITY * dimension];
+            this.scales = new float[INITIAL_CAPACITY];
+        } else {
+            this.vectors = new float[INITIAL_CAPACITY * dimension];
+        }
+        this.chunkIds = new long[INITIAL_CAPACITY];
+        this.links = new int[INITIAL_CAPACITY][][];
+        this.deleted = new boolean[INITIAL_CAPACITY];
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return size - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int bytesPerVector() {
+        return quantized ? dimension + Float.BYTES : dimension * Float.BYTES;
+    }
+
+    double fragmentation() {
+        lock.readLock().lock();
+        try {
+            return size == 0 ? 0 : (double) deletedCount / size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void add(long chunkId, float[] vector) {
+        insert(chunkId, vector, true);
+    }
+
+    void addIfAbsent(long chunkId, float[] vector) {
+        insert(chunkId, vector, false);
+    }
+
+    boolean remove(long chunkId) {
+        lock.writeLock().lock();
+        try {
+            Integer node = nodesByChunkId.remove(chunkId);
+            if (node == null) {
+                return false;
+            }
+            markDeleted(node);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    List<ScoredChunk> search(float[] query, int k, LongPredicate filter) {
+        float[] normalized = VectorMath.normalize(query);
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || k <= 0) {
+                return List.of();
+            }
+            int current = entryPoint;
+            for (int level = maxLevel; level > 0; level--) {
+                current = greedySearch(normalized, current, level);
+            }
+            IntPredicate accept = node -> !deleted[node] && filter.test(chunkIds[node]);
+            return searchLayer(normalized, current, Math.max(efSearch, k), 0, accept).stream()
+                    .limit(k)
+                    .map(c -> new ScoredChunk(chunkIds[c.node()], 1 - c.distance()))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<ScoredChunk> exactSearch(float[] query, int k, Collection<Long> candidateIds) {
+        float[] normalized = VectorMath.normalize(query);
+        lock.readLock().lock();
+        try {
+            PriorityQueue<Candidate> best = new PriorityQueue<>(NEAREST_FIRST.reversed());
+            for (Long chunkId : candidateIds) {
+                Integer node = nodesByChunkId.get(chunkId);
+                if (node != null) {
+                    offer(best, new Candidate(node, distance(normalized, node)), k);
+                }
+            }
+            return toScored(best);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<ScoredChunk> bruteForce(float[] query, int k) {
+        float[] normalized = VectorMath.normalize(query);
+        lock.readLock().lock();
+        try {
+            PriorityQueue<Candidate> best = new PriorityQueue<>(NEAREST_FIRST.reversed());
+            for (int node = 0; node < size; node++) {
+                if (!deleted[node]) {
+                    offer(best, new Candidate(node, distance(normalized, node)), k);
+                }
+            }
+            return toScored(best);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Average share of the exact top-k that the graph search returns, using stored vectors as queries.
+     */
+    double measureRecall(int samples, int k) {
+        List<float[]> queries = new ArrayList<>(samples);
+        lock.readLock().lock();
+        try {
+            SplittableRandom sampler = new SplittableRandom(7);
+            for (int i = 0; i < samples * 10 && queries.size() < samples && size - deletedCount > 0; i++) {
+                int node = sampler.nextInt(size);
+                if (!deleted[node]) {
+                    queries.add(vector(node));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (queries.isEmpty()) {
+            return 1;
+        }
+
+        double total = 0;
+        for (float[] query : queries) {
+            List<Long> expected = bruteForce(query, k).stream().map(ScoredChunk::chunkId).toList();
+            List<Long> actual = search(query, k, id -> true).stream().map(ScoredChunk::chunkId).toList();
+            total += expected.isEmpty() ? 1 : (double) actual.stream().filter(expected::contains).count() / expected.size();
+        }
+        return total / queries.size();
+    }
+
+    private void insert(long chunkId, float[] vector, boolean replace) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected vector of dimension " + dimension + ", got " + vector.length);
+        }
+        float[] normalized = VectorMath.normalize(vector);
+
+        lock.writeLock().lock();
+        try {
+            Integer existing = nodesByChunkId.get(chunkId);
+            if (existing != null) {
+                if (!replace) {
+                    return;
+                }
+                markDeleted(existing);
+            }
+
+            int level = randomLevel();
+            int node = allocate(chunkId, normalized, level);
+            nodesByChunkId.put(chunkId, node);
+
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return;
+            }
+
+            int current = entryPoint;
+            for (int l = maxLevel; l > level; l--) {
+                current = greedySearch(normalized, current, l);
+            }
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                List<Candidate> candidates = searchLayer(normalized, current, efConstruction, l, n -> true);
+                List<Candidate> selected = selectNeighbours(candidates, m);
+                int[] nodeLinks = links[node][l];
+                for (Candidate neighbour : selected) {
+                    nodeLinks[++nodeLinks[0]] = neighbour.node();
+                    connect(neighbour.node(), node, l);
+                }
+                current = candidates.get(0).node();
+            }
+
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = node;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void markDeleted(int node) {
+        if (!deleted[node]) {
+            deleted[node] = true;
+            deletedCount++;
+        }
+    }
+
+    private int randomLevel() {
+        return (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+    }
+
+    private int allocate(long chunkId, float[] normalized, int level) {
+        if (size == chunkIds.length) {
+            int capacity = chunkIds.length * 2;
+            if (quantized) {
+                codes = Arrays.copyOf(codes, capacity * dimension);
+                scales = Arrays.copyOf(scales, capacity);
+            } else {
+                vectors = Arrays.copyOf(vectors, capacity * dimension);
+            }
+            chunkIds = Arrays.copyOf(chunkIds, capacity);
+            links = Arrays.copyOf(links, capacity);
+            deleted = Arrays.copyOf(deleted, capacity);
+        }
+        int node = size++;
+        if (quantized) {
+            scales[node] = quantize(normalized, codes, node * dimension);
+        } else {
+            System.arraycopy(normalized, 0, vectors, node * dimension, dimension);
+        }
+        chunkIds[node] = chunkId;
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[maxLinks(l) + 1];
+        }
+        return node;
+    }
+
+    private int maxLinks(int level) {
+        return level == 0 ? maxM0 : m;
+    }
+
+    private int greedySearch(float[] query, int entry, int level) {
+        int current = entry;
+        float currentDistance = distance(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbours = links[current][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                float d = distance(query, neighbours[i]);
+                if (d < currentDistance) {
+                    currentDistance = d;
+                    current = neighbours[i];
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    private List<Candidate> searchLayer(float[] query, int entry, int ef, int level, IntPredicate accept) {
+        BitSet visited = new BitSet(size);
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(NEAREST_FIRST);
+        PriorityQueue<Candidate> results = new PriorityQueue<>(NEAREST_FIRST.reversed());
+
+        Candidate start = new Candidate(entry, distance(query, entry));
+        visited.set(entry);
+        candidates.add(start);
+        if (accept.test(entry)) {
+            results.add(start);
+        }
+
+        while (!candidates.isEmpty()) {
+            Candidate closest = candidates.poll();
+            if (results.size() >= ef && closest.distance() > results.peek().distance()) {
+                break;
+            }
+            int[] neighbours = links[closest.node()][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int neighbour = neighbours[i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                float d = distance(query, neighbour);
+                if (results.size() < ef || d < results.peek().distance()) {
+                    Candidate candidate = new Candidate(neighbour, d);
+                    candidates.add(candidate);
+                    if (accept.test(neighbour)) {
+                        offer(results, candidate, ef);
+                    }
+                }
+            }
+        }
+
+        List<Candidate> sorted = new ArrayList<>(results);
+        sorted.sort(NEAREST_FIRST);
+        return sorted;
+    }
+
+    private List<Candidate> selectNeighbours(List<Candidate> sortedCandidates, int max) {
+        List<Candidate> selected = new ArrayList<>(max);
+        List<Candidate> pruned = new ArrayList<>();
+        for (Candidate candidate : sortedCandidates) {
+            if (selected.size() >= max) {
+                break;
+            }
+            boolean diverse = true;
+            for (Candidate kept : selected) {
+                if (distance(candidate.node(), kept.node()) < candidate.distance()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            (diverse ? selected : pruned).add(candidate);
+        }
+        for (int i = 0; i < pruned.size() && selected.size() < max; i++) {
+            selected.add(pruned.get(i));
+        }
+        return selected;
+    }
+
+    private void connect(int node, int neighbour, int level) {
+        int[] nodeLinks = links[node][level];
+        int max = maxLinks(level);
+        if (nodeLinks[0] < max) {
+            nodeLinks[++nodeLinks[0]] = neighbour;
+            return;
+        }
+
+        List<Candidate> candidates = new ArrayList<>(max + 1);
+        candidates.add(new Candidate(neighbour, distance(node, neighbour)));
+        for (int i = 1; i <= nodeLinks[0]; i++) {
+            candidates.add(new Candidate(nodeLinks[i], distance(node, nodeLinks[i])));
+        }
+        candidates.sort(NEAREST_FIRST);
+
+        List<Candidate> selected = selectNeighbours(candidates, max);
+        nodeLinks[0] = selected.size();
+        for (int i = 0; i < selected.size(); i++) {
+            nodeLinks[i + 1] = selected.get(i).node();
+        }
+    }
+
+    private float distance(float[] query, int node) {
+        int offset = node * dimension;
+        if (quantized) {
+            return 1 - scales[node] * VectorMath.dot(query, codes, offset, dimension);
+        }
+        return 1 - VectorMath.dot(query, 0, vectors, offset, dimension);
+    }
+
+    private float distance(int a, int b) {
+        if (quantized) {
+            return 1 - scales[a] * scales[b] * VectorMath.dot(codes, a * dimension, codes, b * dimension, dimension);
+        }
+        return 1 - VectorMath.dot(vectors, a * dimension, vectors, b * dimension, dimension);
+    }
+
+    private float[] vector(int node) {
+        int offset = node * dimension;
+        if (!quantized) {
+            return Arrays.copyOfRange(vectors, offset, offset + dimension);
+        }
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = codes[offset + i] * scales[node];
+        }
+        return vector;
+    }
+
+    private static float quantize(float[] vector, byte[] target, int offset) {
+        float maxAbs = 0;
+        for (float v : vector) {
+            maxAbs = Math.max(maxAbs, Math.abs(v));
+        }
+        if (maxAbs == 0) {
+            return 0;
+        }
+        float scale = maxAbs / Byte.MAX_VALUE;
+        for (int i = 0; i < vector.length; i++) {
+            target[offset + i] = (byte) Math.round(vector[i] / scale);
+        }
+        return scale;
+    }
+
+    private List<ScoredChunk> toScored(PriorityQueue<Candidate> best) {
+        List<Candidate> sorted = new ArrayList<>(best);
+        sorted.sort(NEAREST_FIRST);
+        return sorted.stream()
+                .map(c -> new ScoredChunk(chunkIds[c.node()], 1 - c.distance()))
+                .toList();
+    }
+
+    private static void offer(PriorityQueue<Candidate> farthestFirst, Candidate candidate, int limit) {
+        farthestFirst.add(candidate);
+        if (farthestFirst.size() > limit) {
+            farthestFirst.poll();
+        }
+    }
+
+    private record Candidate(int node, float distance) {
+    }
+}
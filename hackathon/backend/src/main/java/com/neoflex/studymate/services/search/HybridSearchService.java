@@ -0,0 +1,222 @@
+package com.neoflex.studymate.services.search;
+
+import com.neoflex.studymate.dto.ChunkCard;
+import com.neoflex.studymate.entities.Chunk;
+import com.neoflex.studymate.services.chunk.ChunkCardCache;
+import com.neoflex.studymate.services.chunk.ChunkService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Combines full-text, vector and tag rankings with reciprocal rank fusion.
+ */
+@Slf4j
+@Service
+public class HybridSearchService {
+
+    private static final String FULL_TEXT_SQL =
+            "SELECT c.id FROM dm.chunks c, to_tsquery('russian', ?) q " +
+                    "WHERE c.content_tsv @@ q " +
+                    "ORDER BY ts_rank_cd(c.content_tsv, q) DESC " +
+                    "LIMIT ?";
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final String TAG_SQL =
+            "SELECT ct.chunk_id FROM dm.chunk_tags ct " +
+                    "JOIN dm.tags t ON t.id = ct.tag_id " +
+                    "WHERE lower(t.name) = ANY(?) " +
+                    "GROUP BY ct.chunk_id " +
+                    "ORDER BY count(*) DESC, ct.chunk_id " +
+                    "LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ChunkCardCache chunkCardCache;
+    private final ChunkService chunkService;
+    private final VectorDbService vectorDbService;
+    private final TagIndex tagIndex;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int candidates;
+    private final int rrfK;
+    private final int minTagMatch;
+
+    public HybridSearchService(JdbcTemplate jdbcTemplate,
+                               ChunkCardCache chunkCardCache,
+                               ChunkService chunkService,
+                               VectorDbService vectorDbService,
+                               TagIndex tagIndex,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.search.hybrid.enabled}") boolean enabled,
+                               @Value("${app.search.hybrid.candidates}") int candidates,
+                               @Value("${app.search.hybrid.rrf-k}") int rrfK,
+                               @Value("${app.search.tag-index.min-match}") int minTagMatch) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkCardCache = chunkCardCache;
+        this.chunkService = chunkService;
+        this.vectorDbService = vectorDbService;
+        this.tagIndex = tagIndex;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.candidates = candidates;
+        this.rrfK = rrfK;
+        this.minTagMatch = minTagMatch;
+    }
+
+    public List<ChunkCard> findRelevantChunks(String query, float[] queryEmbedding, List<String> tags) {
+        return enabled ? search(query, queryEmbedding, tags).chunks() : searchByTags(queryEmbedding, tags).chunks();
+    }
+
+    /**
+     * A {@code null} embedding (the embedding model is unavailable) leaves the vector ranking empty.
+     */
+    public SearchResult search(String query, float[] queryEmbedding, List<String> tags) {
+        List<Long> fullText = timed("fulltext", () -> fullTextRanking(query));
+        List<Long> vector = queryEmbedding == null ? List.of() : timed("vector",
+                () -> vectorDbService.findNearest(queryEmbedding, null, candidates)).stream()
+                .filter(e -> e.score() >= 0)
+                .map(ScoredChunk::chunkId)
+                .toList();
+        List<Long> tagged = timed("tags", () -> tagRanking(tags));
+
+        Set<Long> candidateIds = new LinkedHashSet<>(fullText);
+        candidateIds.addAll(vector);
+        candidateIds.addAll(tagged);
+
+        List<Long> topIds = fuse(List.of(fullText, vector, tagged), rrfK, VectorDbService.TOP_K);
+        log.info("Hybrid search: {} full-text, {} vector, {} tag candidates, top chunk IDs {}",
+                fullText.size(), vector.size(), tagged.size(), topIds);
+        recordCandidates("hybrid", candidateIds.size());
+        return new SearchResult(loadCards(topIds), candidateIds.size());
+    }
+
+    /**
+     * Tag-only candidate selection: chunks sharing at least {@code app.search.tag-index.min-match} tags with the query,
+     * re-ranked by vector similarity. Only the final top-k chunks are loaded from the database. Without an embedding
+     * the candidates keep their tag order.
+     */
+    public SearchResult searchByTags(float[] queryEmbedding, List<String> tags) {
+        if (!tagIndex.isAvailable()) {
+            List<Chunk> tagCandidates = timed("tags", () -> chunkService.findByTags(tags));
+            int candidateCount = (int) tagCandidates.stream().map(Chunk::getId).distinct().count();
+            List<Long> topIds = queryEmbedding == null
+                    ? tagCandidates.stream().map(Chunk::getId).distinct().limit(VectorDbService.TOP_K).toList()
+                    : timed("vector", () -> vectorDbService.findTopRelevantChunks(queryEmbedding, tagCandidates)).stream()
+                    .map(Chunk::getId)
+                    .toList();
+            recordCandidates("tags", candidateCount);
+            return new SearchResult(loadCards(topIds), candidateCount);
+        }
+
+        List<Long> candidateIds = timed("tags", () -> TagIndex.toIds(tagIndex.candidates(tags, minTagMatch)));
+        recordCandidates("tags", candidateIds.size());
+        if (candidateIds.isEmpty()) {
+            log.warn("No chunks found for tags {}", tags);
+            return new SearchResult(List.of(), 0);
+        }
+        List<Long> topIds = queryEmbedding == null
+                ? candidateIds.stream().limit(VectorDbService.TOP_K).toList()
+                : timed("vector", () -> vectorDbService.findNearest(queryEmbedding, candidateIds, VectorDbService.TOP_K)).stream()
+                .filter(e -> e.score() >= 0)
+                .map(ScoredChunk::chunkId)
+                .toList();
+        log.info("Tag search: {} candidates, top chunk IDs {}", candidateIds.size(), topIds);
+        return new SearchResult(loadCards(topIds), candidateIds.size());
+    }
+
+    private List<ChunkCard> loadCards(List<Long> ids) {
+        return timed("cards", () -> chunkCardCache.getAll(ids));
+    }
+
+    private <T> T timed(String source, Supplier<T> query) {
+        return Timer.builder("search.query")
+                .description("Latency of one retrieval source of the search")
+                .tag("source", source)
+                .register(meterRegistry)
+                .record(query);
+    }
+
+    private void recordCandidates(String path, int count) {
+        DistributionSummary.builder("search.candidates")
+                .description("Number of candidate chunks considered before ranking")
+                .tag("path", path)
+                .register(meterRegistry)
+                .record(count);
+    }
+
+    static List<Long> fuse(List<List<Long>> rankings, int k, int limit) {
+        Map<Long, Double> scores = new HashMap<>();
+        for (List<Long> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                scores.merge(ranking.get(rank), 1.0 / (k + rank + 1), Double::sum);
+            }
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * Query words as quoted {@code to_tsquery} lexemes joined with OR, so a chunk matching any word is a candidate
+     * and {@code ts_rank_cd} favours those matching more. Words keep only letters and digits, so the query text
+     * cannot inject tsquery operators.
+     */
+    static String anyWordQuery(String query) {
+        if (query == null) {
+            return "";
+        }
+        return NON_WORD.splitAsStream(query)
+                .filter(word -> !word.isEmpty())
+                .distinct()
+                .map(word -> "'" + word + "'")
+                .collect(Collectors.joining(" | "));
+    }
+
+    private List<Long> fullTextRanking(String query) {
+        String tsQuery = anyWordQuery(query);
+        if (tsQuery.isEmpty()) {
+            return List.of();
+        }
+        try {
+            return jdbcTemplate.queryForList(FULL_TEXT_SQL, Long.class, tsQuery, candidates);
+        } catch (Exception e) {
+            log.warn("Full-text search failed: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    private List<Long> tagRanking(List<String> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return List.of();
+        }
+        if (tagIndex.isAvailable()) {
+            return tagIndex.rank(tags, candidates);
+        }
+        String[] lowered = tags.stream().map(String::toLowerCase).distinct().toArray(String[]::new);
+        return jdbcTemplate.query(TAG_SQL,
+                ps -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("varchar", lowered));
+                    ps.setInt(2, candidates);
+                },
+                (rs, rowNum) -> rs.getLong(1));
+    }
+
+    public record SearchResult(List<ChunkCard> chunks, int candidateCount) {
+    }
+}
@@ -0,0 +1,71 @@
+package com.neoflex.studymate.services.search;
+
+import com.neoflex.studymate.services.chunk.EmbeddingService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class PgVectorChunkRetriever implements ChunkRetriever {
+
+    private static final String NEAREST_SQL = """
+            WITH q AS (SELECT ?::vector AS embedding)
+            SELECT v.chunk_id, 1 - (v.embedding <=> q.embedding) AS score
+            FROM dm.chunks_vectors v, q
+            ORDER BY v.embedding <=> q.embedding
+            LIMIT ?
+            """;
+
+    /**
+     * Candidates are materialized before ordering, so the distance sort is an exact scan over them: the HNSW index
+     * filters only after its approximate scan ({@code ef_search} rows) and would drop most of a selective candidate set.
+     */
+    private static final String NEAREST_AMONG_SQL = """
+            WITH q AS (SELECT ?::vector AS embedding),
+                 c AS MATERIALIZED (SELECT v.chunk_id, v.embedding FROM dm.chunks_vectors v WHERE v.chunk_id = ANY(?))
+            SELECT c.chunk_id, 1 - (c.embedding <=> q.embedding) AS score
+            FROM c, q
+            ORDER BY c.embedding <=> q.embedding
+            LIMIT ?
+            """;
+
+    private static final RowMapper<ScoredChunk> SCORED_CHUNK_MAPPER =
+            (rs, rowNum) -> new ScoredChunk(rs.getLong("chunk_id"), rs.getDouble("score"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public List<ScoredChunk> findNearest(float[] queryEmbedding, Collection<Long> candidateIds, int limit) {
+        String embedding = EmbeddingService.vectorToString(queryEmbedding);
+
+        if (candidateIds == null) {
+            return jdbcTemplate.query(NEAREST_SQL,
+                    ps -> {
+                        ps.setString(1, embedding);
+                        ps.setInt(2, limit);
+                    },
+                    SCORED_CHUNK_MAPPER);
+        }
+
+        return jdbcTemplate.query(NEAREST_AMONG_SQL,
+                ps -> {
+                    ps.setString(1, embedding);
+                    ps.setArray(2, ps.getConnection().createArrayOf("bigint", candidateIds.toArray()));
+                    ps.setInt(3, limit);
+                },
+                SCORED_CHUNK_MAPPER);
+    }
+}
@@ -0,0 +1,4 @@
+package com.neoflex.studymate.services.search;
+
+public record ScoredChunk(long chunkId, double score) {
+}
@@ -0,0 +1,254 @@
+package com.neoflex.studymate.services.search;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memory-resident inverted index from normalized tag name to a compressed bitmap of chunk ids.
+ * Bitmaps are never modified after publication, so lookups need no locking; updates clone only the bitmaps
+ * of the tags they touch, once per batch, and replace those entries.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TagIndex {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.search.tag-index.enabled}")
+    private boolean enabled;
+
+    private volatile Map<String, RoaringBitmap> postings = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (enabled) {
+            Thread.ofVirtual().name("tag-index-load").start(this::reload);
+        }
+    }
+
+    public boolean isAvailable() {
+        return ready;
+    }
+
+    public synchronized void reload() {
+        long start = System.nanoTime();
+        Map<String, RoaringBitmap> loaded = new ConcurrentHashMap<>();
+        int[] skipped = new int[1];
+        jdbcTemplate.query(
+                "SELECT t.name, ct.chunk_id FROM dm.chunk_tags ct JOIN dm.tags t ON t.id = ct.tag_id",
+                rs -> {
+                    long chunkId = rs.getLong("chunk_id");
+                    if (chunkId > Integer.MAX_VALUE) {
+                        skipped[0]++;
+                        return;
+                    }
+                    loaded.computeIfAbsent(normalize(rs.getString("name")), k -> new RoaringBitmap()).add((int) chunkId);
+                });
+        loaded.values().forEach(RoaringBitmap::runOptimize);
+        postings = loaded;
+        ready = true;
+        if (skipped[0] > 0) {
+            log.warn("Tag index skipped {} links with chunk ids outside the int range", skipped[0]);
+        }
+        log.info("Tag index loaded: {} tags, {} bytes in {} ms", loaded.size(), sizeInBytes(loaded),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Replaces the tags of a chunk; an empty collection removes it from the index.
+     */
+    public void setTags(long chunkId, Collection<String> tags) {
+        setTags(Map.of(chunkId, tags));
+    }
+
+    /**
+     * Replaces the tags of several chunks with one pass over the index.
+     */
+    public synchronized void setTags(Map<Long, ? extends Collection<String>> tagsByChunk) {
+        Map<Integer, Set<String>> wanted = indexable(tagsByChunk);
+        if (wanted.isEmpty()) {
+            return;
+        }
+        RoaringBitmap ids = new RoaringBitmap();
+        wanted.keySet().forEach(ids::add);
+        Map<String, RoaringBitmap> current = postings;
+        Map<String, RoaringBitmap> changed = new HashMap<>();
+        current.forEach((tag, bitmap) -> {
+            if (RoaringBitmap.intersects(bitmap, ids)) {
+                RoaringBitmap.and(bitmap, ids).forEach((int id) -> {
+                    if (!wanted.get(id).contains(tag)) {
+                        editable(changed, current, tag).remove(id);
+                    }
+                });
+            }
+        });
+        add(wanted, current, changed);
+        publish(current, changed);
+    }
+
+    public void addTags(long chunkId, Collection<String> tags) {
+        addTags(Map.of(chunkId, tags));
+    }
+
+    /**
+     * Adds tags to several chunks, cloning each touched bitmap once.
+     */
+    public synchronized void addTags(Map<Long, ? extends Collection<String>> tagsByChunk) {
+        Map<Integer, Set<String>> wanted = indexable(tagsByChunk);
+        Map<String, RoaringBitmap> current = postings;
+        Map<String, RoaringBitmap> changed = new HashMap<>();
+        add(wanted, current, changed);
+        publish(current, changed);
+    }
+
+    public void remove(long chunkId) {
+        setTags(chunkId, List.of());
+    }
+
+    /**
+     * Chunks carrying at least {@code minMatch} of the given tags.
+     */
+    public RoaringBitmap candidates(Collection<String> tags, int minMatch) {
+        List<RoaringBitmap> bitmaps = bitmapsFor(tags);
+        if (bitmaps.isEmpty()) {
+            return new RoaringBitmap();
+        }
+        if (minMatch <= 1) {
+            return FastAggregation.or(bitmaps.iterator());
+        }
+        if (minMatch >= bitmaps.size()) {
+            return minMatch > bitmaps.size() ? new RoaringBitmap() : FastAggregation.and(bitmaps.iterator());
+        }
+        RoaringBitmap result = new RoaringBitmap();
+        matchCounts(bitmaps).forEach((id, count) -> {
+            if (count >= minMatch) {
+                result.add(id);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Up to {@code limit} chunk ids ordered by the number of matching tags, then by id.
+     */
+    public List<Long> rank(Collection<String> tags, int limit) {
+        List<RoaringBitmap> bitmaps = bitmapsFor(tags);
+        if (bitmaps.isEmpty()) {
+            return List.of();
+        }
+        return matchCounts(bitmaps).entrySet().stream()
+                .sorted(Map.Entry.<Integer, Integer>comparingByValue(Comparator.reverseOrder())
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(e -> (long) e.getKey())
+                .toList();
+    }
+
+    public static List<Long> toIds(RoaringBitmap bitmap) {
+        List<Long> ids = new ArrayList<>(bitmap.getCardinality());
+        bitmap.forEach((int id) -> ids.add((long) id));
+        return ids;
+    }
+
+    private List<RoaringBitmap> bitmapsFor(Collection<String> tags) {
+        Map<String, RoaringBitmap> current = postings;
+        List<RoaringBitmap> bitmaps = new ArrayList<>();
+        for (String tag : normalizeAll(tags)) {
+            RoaringBitmap bitmap = current.get(tag);
+            if (bitmap != null) {
+                bitmaps.add(bitmap);
+            }
+        }
+        return bitmaps;
+    }
+
+    private static Map<Integer, Integer> matchCounts(List<RoaringBitmap> bitmaps) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (RoaringBitmap bitmap : bitmaps) {
+            bitmap.forEach((int id) -> counts.merge(id, 1, Integer::sum));
+        }
+        return counts;
+    }
+
+    private static Map<Integer, Set<String>> indexable(Map<Long, ? extends Collection<String>> tagsByChunk) {
+        Map<Integer, Set<String>> indexable = new HashMap<>();
+        tagsByChunk.forEach((chunkId, tags) -> {
+            if (chunkId <= Integer.MAX_VALUE) {
+                indexable.put(chunkId.intValue(), normalizeAll(tags));
+            }
+        });
+        return indexable;
+    }
+
+    private static void add(Map<Integer, Set<String>> wanted, Map<String, RoaringBitmap> current,
+                            Map<String, RoaringBitmap> changed) {
+        wanted.forEach((id, tags) -> {
+            for (String tag : tags) {
+                RoaringBitmap bitmap = changed.getOrDefault(tag, current.get(tag));
+                if (bitmap == null || !bitmap.contains(id)) {
+                    editable(changed, current, tag).add(id);
+                }
+            }
+        });
+    }
+
+    /**
+     * A private copy of the tag's bitmap for this update; published bitmaps are never modified.
+     */
+    private static RoaringBitmap editable(Map<String, RoaringBitmap> changed, Map<String, RoaringBitmap> current, String tag) {
+        return changed.computeIfAbsent(tag, t -> {
+            RoaringBitmap bitmap = current.get(t);
+            return bitmap == null ? new RoaringBitmap() : bitmap.clone();
+        });
+    }
+
+    private static void publish(Map<String, RoaringBitmap> current, Map<String, RoaringBitmap> changed) {
+        changed.forEach((tag, bitmap) -> {
+            if (bitmap.isEmpty()) {
+                current.remove(tag);
+            } else {
+                current.put(tag, bitmap);
+            }
+        });
+    }
+
+    private static Set<String> normalizeAll(Collection<String> tags) {
+        Set<String> normalized = new LinkedHashSet<>();
+        if (tags != null) {
+            for (String tag : tags) {
+                if (tag != null && !tag.isBlank()) {
+                    normalized.add(normalize(tag));
+                }
+            }
+        }
+        return normalized;
+    }
+
+    private static String normalize(String tag) {
+        return tag.strip().toLowerCase(Locale.ROOT);
+    }
+
+    private static long sizeInBytes(Map<String, RoaringBitmap> postings) {
+        return postings.values().stream().mapToLong(RoaringBitmap::getLongSizeInBytes).sum();
+    }
+}
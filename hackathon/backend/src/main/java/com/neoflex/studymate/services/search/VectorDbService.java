@@ -6,36 +6,53 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class VectorDbService {
 
+    static final int TOP_K = 3;
+
     private final YandexGptService yandexGptService;
+    private final List<ChunkRetriever> chunkRetrievers;
+
+    public float[] embedQuery(String query) {
+        return yandexGptService.getEmbedding(query);
+    }
 
     public List<Chunk> findTopRelevantChunks(String query, List<Chunk> chunks) {
         if (chunks == null || chunks.isEmpty()) {
             log.warn("No chunks provided for relevance search");
             return List.of();
         }
+        return findTopRelevantChunks(embedQuery(query), chunks);
+    }
 
-        double[] queryEmbedding = toArray(yandexGptService.getEmbedding(query));
+    public List<Chunk> findTopRelevantChunks(float[] queryEmbedding, List<Chunk> chunks) {
+        if (chunks == null || chunks.isEmpty()) {
+            log.warn("No chunks provided for relevance search");
+            return List.of();
+        }
+
+        Map<Long, Chunk> candidates = chunks.stream()
+                .collect(Collectors.toMap(Chunk::getId, Function.identity(), (a, b) -> a, LinkedHashMap::new));
         double threshold = 0;
 
-        List<Chunk> topChunks = chunks.stream()
-                .map(p -> Map.entry(p, cosineSimilarity(queryEmbedding, toArray(yandexGptService.getEmbedding(p.getContent())))))
-                .peek(e -> log.debug("Chunk ID: {}, score: {}", e.getKey().getId(), e.getValue()))
-                .filter(e -> e.getValue() >= threshold)
-                .sorted((e1, e2) -> Double.compare(e2.getValue(), e1.getValue()))
-                .limit(3)
-                .map(Map.Entry::getKey)
+        List<Chunk> topChunks = findNearest(queryEmbedding, candidates.keySet(), TOP_K).stream()
+                .peek(e -> log.debug("Chunk ID: {}, score: {}", e.chunkId(), e.score()))
+                .filter(e -> e.score() >= threshold)
+                .map(e -> candidates.get(e.chunkId()))
                 .toList();
 
         if (topChunks.isEmpty()) {
-            log.warn("No relevant chunks found above threshold {}", threshold);
+            log.warn("No relevant chunks found above threshold {} among {} candidates", threshold, candidates.size());
         } else {
             log.info("Top relevant chunk IDs above threshold {}: {}", threshold, topChunks.stream().map(Chunk::getId).toList());
         }
@@ -43,19 +60,22 @@ public class VectorDbService {
         return topChunks;
     }
 
-    private double cosineSimilarity(double[] vec1, double[] vec2) {
-        double dot = 0.0, normA = 0.0, normB = 0.0;
-        for (int i = 0; i < vec1.length; i++) {
-            dot += vec1[i] * vec2[i];
-            normA += vec1[i] * vec1[i];
-            normB += vec2[i] * vec2[i];
+    /**
+     * Nearest chunks from the first available retriever; {@code null} candidates mean the whole corpus.
+     */
+    public List<ScoredChunk> findNearest(float[] queryEmbedding, Collection<Long> candidateIds, int limit) {
+        for (ChunkRetriever retriever : chunkRetrievers) {
+            if (!retriever.isAvailable()) {
+                continue;
+            }
+            try {
+                return retriever.findNearest(queryEmbedding, candidateIds, limit).stream()
+                        .filter(e -> candidateIds == null || candidateIds.contains(e.chunkId()))
+                        .toList();
+            } catch (Exception e) {
+                log.error("Chunk retriever {} failed, trying next one", retriever.getClass().getSimpleName(), e);
+            }
         }
-        double similarity = dot / (Math.sqrt(normA) * Math.sqrt(normB));
-        log.debug("Cosine similarity calculated: {}", similarity);
-        return similarity;
-    }
-
-    private double[] toArray(List<Double> list) {
-        return list.stream().mapToDouble(Double::doubleValue).toArray();
+        throw new IllegalStateException("No chunk retriever available");
     }
-}
\ No newline at end of file
+}
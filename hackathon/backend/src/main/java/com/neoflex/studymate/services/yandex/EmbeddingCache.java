@@ -0,0 +1,143 @@
+package com.neoflex.studymate.services.yandex;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.neoflex.studymate.services.chunk.EmbeddingService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+@Slf4j
+@Component
+public class EmbeddingCache implements MeterBinder {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean persistent;
+    private final Cache<String, float[]> memory;
+
+    private final AtomicLong persistentHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public EmbeddingCache(JdbcTemplate jdbcTemplate,
+                          @Value("${app.embedding-cache.max-size}") long maxSize,
+                          @Value("${app.embedding-cache.persistent}") boolean persistent) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.persistent = persistent;
+        this.memory = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached embedding or computes it; the returned array is shared and must not be modified.
+     */
+    public float[] getOrCompute(String modelUri, String text, Supplier<float[]> loader) {
+        String textHash = hash(normalize(text));
+        String key = modelUri + ':' + textHash;
+
+        float[] cached = memory.getIfPresent(key);
+        if (cached == null && persistent) {
+            cached = loadPersistent(modelUri, textHash);
+            if (cached != null) {
+                persistentHits.incrementAndGet();
+                memory.put(key, cached);
+            }
+        }
+        if (cached != null) {
+            return cached;
+        }
+
+        misses.incrementAndGet();
+        float[] vector = loader.get();
+        memory.put(key, vector);
+        if (persistent) {
+            savePersistent(modelUri, textHash, vector);
+        }
+        return vector;
+    }
+
+    /**
+     * In-memory cache metrics under {@code cache.*{cache=embeddings}}; persistent hits and loads from the API
+     * as {@code cache.gets{cache=embeddings-persistent}}.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, memory, "embeddings");
+        FunctionCounter.builder("cache.gets", persistentHits, AtomicLong::get)
+                .tags("cache", "embeddings-persistent", "result", "hit")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", misses, AtomicLong::get)
+                .tags("cache", "embeddings-persistent", "result", "miss")
+                .register(registry);
+    }
+
+    public Stats stats() {
+        CacheStats memoryStats = memory.stats();
+        return new Stats(memoryStats.hitCount(), persistentHits.get(), misses.get(),
+                memoryStats.evictionCount(), memory.estimatedSize());
+    }
+
+    private float[] loadPersistent(String modelUri, String textHash) {
+        try {
+            List<String> rows = jdbcTemplate.queryForList(
+                    "SELECT embedding::text FROM dm.embedding_cache WHERE model_uri = ? AND text_hash = ?",
+                    String.class, modelUri, textHash);
+            return rows.isEmpty() ? null : EmbeddingService.parseVector(rows.get(0));
+        } catch (Exception e) {
+            log.warn("Failed to read persistent embedding cache: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void savePersistent(String modelUri, String textHash, float[] vector) {
+        try {
+            jdbcTemplate.update(
+                    "INSERT INTO dm.embedding_cache(model_uri, text_hash, embedding) VALUES (?, ?, ?::vector) " +
+                            "ON CONFLICT (model_uri, text_hash) DO NOTHING",
+                    modelUri, textHash, EmbeddingService.vectorToString(vector));
+        } catch (Exception e) {
+            log.warn("Failed to write persistent embedding cache: {}", e.getMessage());
+        }
+    }
+
+    private static String normalize(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFC);
+        return WHITESPACE.matcher(normalized).replaceAll(" ").strip();
+    }
+
+    private static String hash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public record Stats(long memoryHits, long persistentHits, long misses, long evictions, long size) {
+
+        public double hitRate() {
+            long total = memoryHits + persistentHits + misses;
+            return total == 0 ? 0 : (double) (memoryHits + persistentHits) / total;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.neoflex.studymate.services.yandex;
+
+/**
+ * Thrown without calling Yandex API when the circuit is open or the endpoint has no free capacity.
+ */
+public class UpstreamUnavailableException extends RuntimeException {
+
+    public UpstreamUnavailableException(String message) {
+        super(message);
+    }
+
+    public UpstreamUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
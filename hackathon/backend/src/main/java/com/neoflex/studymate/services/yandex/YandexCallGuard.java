@@ -0,0 +1,271 @@
+package com.neoflex.studymate.services.yandex;
+
+import com.neoflex.studymate.utils.AimdLimiter;
+import com.neoflex.studymate.utils.CircuitBreaker;
+import com.neoflex.studymate.utils.HedgeBudget;
+import com.neoflex.studymate.utils.LatencyWindow;
+import com.neoflex.studymate.utils.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Protects calls to Yandex API. Each endpoint has its own bulkhead with an AIMD concurrency limit,
+ * a token bucket matched to the API quota and a circuit breaker, so slow embeddings cannot starve completions.
+ * Short classification calls can be hedged: a second request is sent once the first exceeds the endpoint's p95 latency,
+ * within a budget of {@code app.yandex-client.hedging.max-ratio} of the calls and only while the endpoint is healthy.
+ */
+@Slf4j
+@Component
+public class YandexCallGuard {
+
+    public enum Endpoint {
+        COMPLETION("completion"),
+        EMBEDDING("embedding");
+
+        private final String key;
+
+        Endpoint(String key) {
+            this.key = key;
+        }
+    }
+
+    private final Map<Endpoint, Guard> guards = new EnumMap<>(Endpoint.class);
+    private final ExecutorService hedgeExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("yandex-hedge-", 0).factory());
+    private final MeterRegistry meterRegistry;
+    private final boolean hedgingEnabled;
+    private final int hedgingMinSamples;
+    private final Duration hedgingMinDelay;
+    private final double hedgingMaxRatio;
+    private final double hedgingMaxBurst;
+
+    public YandexCallGuard(Environment environment, MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.hedgingEnabled = environment.getRequiredProperty("app.yandex-client.hedging.enabled", Boolean.class);
+        this.hedgingMinSamples = environment.getRequiredProperty("app.yandex-client.hedging.min-samples", Integer.class);
+        this.hedgingMinDelay = environment.getRequiredProperty("app.yandex-client.hedging.min-delay", Duration.class);
+        this.hedgingMaxRatio = environment.getRequiredProperty("app.yandex-client.hedging.max-ratio", Double.class);
+        this.hedgingMaxBurst = environment.getRequiredProperty("app.yandex-client.hedging.max-burst", Double.class);
+        for (Endpoint endpoint : Endpoint.values()) {
+            guards.put(endpoint, createGuard(environment, endpoint));
+        }
+    }
+
+    public <T> T call(Endpoint endpoint, Supplier<T> call) {
+        Guard guard = guards.get(endpoint);
+        acquire(endpoint, guard);
+
+        long start = System.nanoTime();
+        boolean upstreamFailure = false;
+        boolean reachedUpstream = false;
+        try {
+            guard.rateLimiter().acquire();
+            reachedUpstream = true;
+            T result = call.get();
+            guard.latencies().record(System.nanoTime() - start);
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UpstreamUnavailableException("Interrupted while waiting for Yandex API " + endpoint.key + " quota", e);
+        } catch (RuntimeException e) {
+            // a cancelled hedge says nothing about the upstream
+            reachedUpstream &= !Thread.currentThread().isInterrupted();
+            upstreamFailure = isUpstreamFailure(e);
+            throw e;
+        } finally {
+            if (!reachedUpstream) {
+                guard.breaker().releasePermission();
+                guard.limiter().releaseIgnored();
+            } else {
+                if (upstreamFailure) {
+                    guard.breaker().onFailure();
+                } else {
+                    guard.breaker().onSuccess();
+                }
+                guard.limiter().release(!upstreamFailure);
+            }
+        }
+    }
+
+    /**
+     * Like {@link #call} but sends a backup request when the first one is slower than the endpoint's p95,
+     * returning whichever succeeds first and cancelling the other. No backup is sent when the hedge budget is spent,
+     * the concurrency limit is reached or the circuit is not closed.
+     */
+    public <T> T callHedged(Endpoint endpoint, Supplier<T> call) {
+        Guard guard = guards.get(endpoint);
+        guard.hedgeBudget().onCall();
+        Duration p95 = hedgingEnabled ? guard.latencies().percentile(0.95, hedgingMinSamples) : null;
+        if (p95 == null) {
+            return call(endpoint, call);
+        }
+        long delayNanos = Math.max(p95.toNanos(), hedgingMinDelay.toNanos());
+
+        ExecutorCompletionService<T> completion = new ExecutorCompletionService<>(hedgeExecutor);
+        List<Future<T>> futures = new ArrayList<>(2);
+        futures.add(completion.submit(() -> call(endpoint, call)));
+        try {
+            int pending = 1;
+            Future<T> done = completion.poll(delayNanos, TimeUnit.NANOSECONDS);
+            if (done == null) {
+                String skipReason = hedgeSkipReason(guard);
+                if (skipReason == null) {
+                    guard.hedges().increment();
+                    futures.add(completion.submit(() -> call(endpoint, call)));
+                    pending = 2;
+                } else {
+                    guard.hedgeSkipped(skipReason).increment();
+                }
+                done = completion.take();
+            }
+            while (true) {
+                try {
+                    return done.get();
+                } catch (ExecutionException e) {
+                    if (--pending == 0) {
+                        throw e.getCause() instanceof RuntimeException runtime ? runtime
+                                : new RuntimeException("Yandex API request failed", e.getCause());
+                    }
+                    done = completion.take();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UpstreamUnavailableException("Interrupted while waiting for Yandex API " + endpoint.key, e);
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * Returns why a backup request must not be sent now, or {@code null} if it may; the budget is checked last,
+     * so it is only spent on hedges that are actually sent.
+     */
+    private static String hedgeSkipReason(Guard guard) {
+        if (guard.breaker().state() != CircuitBreaker.State.CLOSED) {
+            return "circuit-not-closed";
+        }
+        if (guard.limiter().inFlight() >= guard.limiter().limit()) {
+            return "saturated";
+        }
+        if (!guard.hedgeBudget().tryHedge()) {
+            return "budget";
+        }
+        return null;
+    }
+
+    public CircuitBreaker.State state(Endpoint endpoint) {
+        return guards.get(endpoint).breaker().state();
+    }
+
+    private void acquire(Endpoint endpoint, Guard guard) {
+        boolean acquired;
+        try {
+            acquired = guard.limiter().acquire(guard.queueTimeout());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UpstreamUnavailableException("Interrupted while waiting for Yandex API " + endpoint.key, e);
+        }
+        if (!acquired) {
+            guard.rejected("bulkhead").increment();
+            log.warn("Yandex API {} bulkhead is full (limit {}), rejecting call", endpoint.key, guard.limiter().limit());
+            throw new UpstreamUnavailableException("Yandex API " + endpoint.key + " is overloaded");
+        }
+        if (!guard.breaker().tryAcquirePermission()) {
+            guard.limiter().releaseIgnored();
+            guard.rejected("circuit-open").increment();
+            throw new UpstreamUnavailableException("Yandex API " + endpoint.key + " circuit is open");
+        }
+    }
+
+    private static boolean isUpstreamFailure(RuntimeException e) {
+        Throwable cause = e;
+        while (cause != null) {
+            if (cause instanceof HttpServerErrorException
+                    || cause instanceof HttpClientErrorException.TooManyRequests
+                    || cause instanceof ResourceAccessException) {
+                return true;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+
+    private Guard createGuard(Environment environment, Endpoint endpoint) {
+        String prefix = "app.yandex-client." + endpoint.key + ".";
+        String breakerPrefix = "app.yandex-client.circuit-breaker.";
+        double ratePerSecond = environment.getRequiredProperty(prefix + "rate-per-second", Double.class);
+
+        Guard guard = new Guard(
+                endpoint,
+                new AimdLimiter(
+                        environment.getRequiredProperty(prefix + "initial-concurrency", Integer.class),
+                        environment.getRequiredProperty(prefix + "min-concurrency", Integer.class),
+                        environment.getRequiredProperty(prefix + "max-concurrency", Integer.class)),
+                new TokenBucket(ratePerSecond, Math.max(1, ratePerSecond)),
+                new CircuitBreaker(
+                        environment.getRequiredProperty(breakerPrefix + "window-size", Integer.class),
+                        environment.getRequiredProperty(breakerPrefix + "minimum-calls", Integer.class),
+                        environment.getRequiredProperty(breakerPrefix + "failure-rate-threshold", Double.class),
+                        environment.getRequiredProperty(breakerPrefix + "open-duration", Duration.class),
+                        environment.getRequiredProperty(breakerPrefix + "half-open-calls", Integer.class)),
+                new LatencyWindow(200),
+                environment.getRequiredProperty(prefix + "queue-timeout", Duration.class),
+                Counter.builder("yandex.client.hedged").tag("endpoint", endpoint.key).register(meterRegistry),
+                new HedgeBudget(hedgingMaxRatio, hedgingMaxBurst),
+                meterRegistry);
+
+        Gauge.builder("yandex.client.concurrency.limit", guard.limiter(), AimdLimiter::limit)
+                .tag("endpoint", endpoint.key).register(meterRegistry);
+        Gauge.builder("yandex.client.in.flight", guard.limiter(), AimdLimiter::inFlight)
+                .tag("endpoint", endpoint.key).register(meterRegistry);
+        Gauge.builder("yandex.client.circuit.open", guard.breaker(), b -> b.state() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .tag("endpoint", endpoint.key).register(meterRegistry);
+        return guard;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hedgeExecutor.shutdownNow();
+    }
+
+    private record Guard(Endpoint endpoint, AimdLimiter limiter, TokenBucket rateLimiter, CircuitBreaker breaker,
+                         LatencyWindow latencies, Duration queueTimeout, Counter hedges, HedgeBudget hedgeBudget,
+                         MeterRegistry meterRegistry) {
+
+        Counter rejected(String reason) {
+            return Counter.builder("yandex.client.rejected")
+                    .tag("endpoint", endpoint.key)
+                    .tag("reason", reason)
+                    .register(meterRegistry);
+        }
+
+        Counter hedgeSkipped(String reason) {
+            return Counter.builder("yandex.client.hedge.skipped")
+                    .tag("endpoint", endpoint.key)
+                    .tag("reason", reason)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -1,21 +1,37 @@
 package com.neoflex.studymate.services.yandex;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
-import com.neoflex.studymate.entities.Chunk;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neoflex.studymate.dto.ChunkCard;
+import com.neoflex.studymate.dto.QueryAnalysis;
+import com.neoflex.studymate.utils.ContextPacker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -23,7 +39,14 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class YandexGptService {
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Qualifier("yandexCompletionRestTemplate")
+    private final RestTemplate completionRestTemplate;
+    @Qualifier("yandexEmbeddingRestTemplate")
+    private final RestTemplate embeddingRestTemplate;
+    private final EmbeddingCache embeddingCache;
+    private final ObjectMapper objectMapper;
+    private final YandexCallGuard callGuard;
+    private final MeterRegistry meterRegistry;
 
     @Value("${yandex.api.api-key}")
     private String apiKey;
@@ -31,48 +54,120 @@ public class YandexGptService {
     @Value("${yandex.api.folder-id}")
     private String folderId;
 
-    private static final String COMPLETION_URL = "https://llm.api.cloud.yandex.net/foundationModels/v1/completion";
-    private static final String EMBEDDING_URL = "https://llm.api.cloud.yandex.net/foundationModels/v1/textEmbedding";
+    @Value("${yandex.api.base-url}")
+    private String baseUrl;
+
+    @Value("${app.context.budget-tokens}")
+    private int contextBudgetTokens;
+
+    @Value("${app.context.max-passage-tokens}")
+    private int maxPassageTokens;
+
+    @Value("${app.context.duplicate-similarity}")
+    private double duplicateSimilarity;
+
+    @Value("${app.metrics.yandex-price-per-1k-tokens.completion}")
+    private double completionPricePer1k;
+
+    @Value("${app.metrics.yandex-price-per-1k-tokens.embedding}")
+    private double embeddingPricePer1k;
+
+    private static final String COMPLETION_PATH = "/foundationModels/v1/completion";
+    private static final String EMBEDDING_PATH = "/foundationModels/v1/textEmbedding";
+    private static final String EMPTY_ANSWER = "Извини, я не нашел ответа на твой вопрос. Попробуй переформулировать его";
 
     public List<String> extractTags(String text) {
-        log.info("Extracting tags for text: '{}'", text);
+        log.debug("Extracting tags for text: '{}'", text);
         String prompt = "Выдели ключевые слова из текста и приведи их к единственному числу и нижнему регистру: \"" + text + "\"";
-        String response = askModel(prompt);
+        String response = askModel("extract_tags", prompt);
         log.debug("Raw tags response: {}", response);
 
-        List<String> tags = Arrays.stream(response.replaceAll("[^\\p{IsAlphabetic}\\s]", "")
-                        .toLowerCase()
-                        .split("\\s+"))
-                .map(String::trim)
-                .filter(s -> !s.isEmpty())
-                .collect(Collectors.toList());
+        List<String> tags = normalizeTags(response);
 
-        log.info("Extracted tags: {}", tags);
+        log.debug("Extracted tags: {}", tags);
         return tags;
     }
 
-    public List<Double> getEmbedding(String text) {
-        log.info("Requesting embedding for text: '{}'", text);
+    public QueryAnalysis analyzeQuery(String query) {
+        log.debug("Analyzing query: '{}'", query);
+
+        String prompt = """
+        Проанализируй вопрос пользователя и ответь строго одним JSON-объектом без пояснений:
+        {"isStudy": true|false, "isLocationLookup": true|false, "tags": ["слово", ...]}
+        isStudy - является ли вопрос учебным. Учебный вопрос — это вопрос по школьным или университетским предметам 
+        (математика, физика, история, литература, информатика и т.п.), по конкретным учебным курсам или учебным материалам. 
+        НЕ учебные вопросы: общие разговоры ("как дела?", "что нового?"), приветствия, бытовые вопросы, личные темы.
+        isLocationLookup - пытается ли пользователь найти, где и в каком курсе находится информация, которую он хочет узнать.
+        tags - ключевые слова из вопроса в единственном числе и нижнем регистре.
+        Вопрос: %s
+        """.formatted(query);
+
+        String answer = askModel("analyze_query", prompt, 0.1, true);
+        log.debug("Query analysis raw response: {}", answer);
+
+        try {
+            QueryAnalysis analysis = parseQueryAnalysis(answer);
+            log.info("Query analysis: study={}, locationLookup={}, tags={}",
+                    analysis.isStudy(), analysis.isLocationLookup(), analysis.getTags());
+            return analysis;
+        } catch (UpstreamUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            log.warn("Failed to parse query analysis, falling back to separate prompts: {}", e.getMessage());
+            return new QueryAnalysis(checkIsStudyQuestion(query), checkIsTryFindLocationQuestion(query), extractTags(query));
+        }
+    }
+
+    /**
+     * Embeds a user query; repeated queries are served from {@link EmbeddingCache}.
+     */
+    public float[] getEmbedding(String text) {
+        String modelUri = embeddingModelUri();
+        return embeddingCache.getOrCompute(modelUri, text, () -> requestEmbedding(modelUri, text));
+    }
+
+    /**
+     * Embeds a chunk body, bypassing {@link EmbeddingCache}: the vector is stored in {@code dm.chunks_vectors}
+     * anyway, and caching chunk bodies would evict the hot query entries during a backfill.
+     */
+    public float[] embedDocument(String text) {
+        return requestEmbedding(embeddingModelUri(), text);
+    }
+
+    private String embeddingModelUri() {
+        return "emb://" + folderId + "/text-search-query/latest";
+    }
+
+    private float[] requestEmbedding(String modelUri, String text) {
+        log.debug("Requesting embedding for text: '{}'", text);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
 
         Map<String, Object> requestBody = Map.of(
-                "modelUri", "emb://" + folderId + "/text-search-query/latest",
+                "modelUri", modelUri,
                 "text", text
         );
 
-        Map<String, Object> response = postRequest(EMBEDDING_URL, requestBody, Map.class);
-
-        if (response == null || !response.containsKey("embedding")) {
-            log.error("No embedding returned from Yandex API for text: '{}'", text);
-            throw new RuntimeException("No embedding returned from Yandex API");
+        try {
+            EmbeddingResponse response = callGuard.call(YandexCallGuard.Endpoint.EMBEDDING,
+                    () -> postRequest(embeddingRestTemplate, baseUrl + EMBEDDING_PATH, requestBody, EmbeddingResponse.class));
+
+            if (response == null || response.getEmbedding() == null) {
+                log.error("No embedding returned from Yandex API for text: '{}'", text);
+                throw new RuntimeException("No embedding returned from Yandex API");
+            }
+
+            recordTokens("embedding", "input", parseTokens(response.getNumTokens()), embeddingPricePer1k);
+            outcome = "success";
+            log.debug("Embedding size: {}", response.getEmbedding().length);
+            return response.getEmbedding();
+        } finally {
+            sample.stop(requestTimer("embedding", outcome));
         }
-
-        List<Double> embedding = (List<Double>) response.get("embedding");
-        log.debug("Embedding size: {}", embedding.size());
-        return embedding;
     }
 
     public boolean checkIsStudyQuestion(String query) {
-        log.info("Checking if query is study-related: '{}'", query);
+        log.debug("Checking if query is study-related: '{}'", query);
 
         String prompt = """
         Определи, является ли этот вопрос учебным. 
@@ -84,16 +179,16 @@ public class YandexGptService {
         Вопрос: %s
         """.formatted(query);
 
-        String answer = askModel(prompt);
+        String answer = askModel("check_study", prompt, 0.6, true);
         log.debug("Study check raw response: {}", answer);
 
         boolean isStudy = answer.contains("1");
-        log.info("Is study question: {}", isStudy);
+        log.debug("Is study question: {}", isStudy);
         return isStudy;
     }
 
     public boolean checkIsTryFindLocationQuestion(String query) {
-        log.info("Checking if query is for finding location of educational materials: '{}'", query);
+        log.debug("Checking if query is for finding location of educational materials: '{}'", query);
 
         String prompt = """
         Определи, пытается ли пользователь найти, где и в каком курсе находится информация, которую он хочет узнать. 
@@ -102,44 +197,228 @@ public class YandexGptService {
         Вопрос: %s
         """.formatted(query);
 
-        String answer = askModel(prompt);
+        String answer = askModel("check_location", prompt, 0.6, true);
         log.debug("Study check raw response: {}", answer);
 
         boolean isFindLocation = answer.contains("1");
-        log.info("Is finding location question: {}", isFindLocation);
+        log.debug("Is finding location question: {}", isFindLocation);
         return isFindLocation;
     }
 
-    public String answerCompleteAnswer(String question, List<Chunk> chunks){
-        String context = chunks.stream()
-                .map(Chunk::getContent)
-                .collect(Collectors.joining("\n\n"));
+    public String answerCompleteAnswer(String question, List<ChunkCard> chunks){
+        return askModel("complete_answer", completeAnswerPrompt(question, chunks));
+    }
 
-        String prompt = """
+    /**
+     * Same as {@link #answerCompleteAnswer} but streams the completion; {@code onPartial} receives the text generated so far.
+     */
+    public String answerCompleteAnswerStreaming(String question, List<ChunkCard> chunks, Consumer<String> onPartial) {
+        return askModelStreaming(completeAnswerPrompt(question, chunks), onPartial);
+    }
+
+    /**
+     * The fixed instructions come first so the prompt prefix is identical across requests, the question comes last.
+     */
+    private String completeAnswerPrompt(String question, List<ChunkCard> chunks) {
+        ContextPacker.Packed context = new ContextPacker(contextBudgetTokens, maxPassageTokens, duplicateSimilarity)
+                .pack(question, chunks.stream()
+                        .map(chunk -> new ContextPacker.Passage(chunk.title(), chunk.content()))
+                        .toList());
+        log.debug("Packed {} of {} chunks into ~{} tokens, {} near-duplicates skipped",
+                context.passages(), chunks.size(), context.tokens(), context.duplicates());
+
+        return """
                         Ответь на вопрос пользователя, опираясь исключительно на приведённые материалы. 
                         Никакой дополнительной информации от себя не добавляй. Обращайся к пользователю только на ты
-                        Вопрос: %s
                         Материалы:
                         %s
-                        """.formatted(question, context);
-
-        return askModel(prompt);
+                        Вопрос: %s
+                        """.formatted(context.context(), question);
     }
 
     public String answerShort(String question){
-        return askModel(
+        return askModel("short_answer",
                 "Ответь кратко и вежливо на этот вопрос, без лишних деталей, обращайся к пользователю только на ты, не здоровайся: \"" + question + "\""
         );
     }
 
-    private String askModel(String prompt) {
-        log.info("Sending request to Yandex GPT. Prompt: '{}'", prompt +" Не используй никакие символы кроме букв, цифр и знаков препинания");
+    private QueryAnalysis parseQueryAnalysis(String answer) throws JsonProcessingException {
+        int start = answer.indexOf('{');
+        int end = answer.lastIndexOf('}');
+        if (start < 0 || end < start) {
+            throw new IllegalArgumentException("No JSON object in response");
+        }
 
-        Map<String, Object> requestBody = Map.of(
+        AnalysisResponse response = objectMapper.readValue(answer.substring(start, end + 1), AnalysisResponse.class);
+        if (response.getIsStudy() == null || response.getIsLocationLookup() == null) {
+            throw new IllegalArgumentException("Missing classification fields");
+        }
+
+        List<String> tags = response.getTags() == null ? List.of() : response.getTags().stream()
+                .flatMap(tag -> normalizeTags(tag).stream())
+                .distinct()
+                .toList();
+        return new QueryAnalysis(response.getIsStudy(), response.getIsLocationLookup(), tags);
+    }
+
+    static List<String> normalizeTags(String text) {
+        return Arrays.stream(text.replaceAll("[^\\p{IsAlphabetic}\\s]", "")
+                        .toLowerCase()
+                        .split("\\s+"))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    private String askModel(String operation, String prompt) {
+        return askModel(operation, prompt, 0.6, false);
+    }
+
+    /**
+     * @param hedged whether a slow request may be duplicated; only for short classification prompts
+     */
+    private String askModel(String operation, String prompt, double temperature, boolean hedged) {
+        log.debug("Sending {} request to Yandex GPT, prompt of {} chars", operation, prompt.length());
+        log.trace("Prompt: '{}'", prompt);
+
+        Map<String, Object> requestBody = completionRequest(prompt, temperature, false);
+
+        Supplier<GptResponse> request = () -> postRequest(completionRestTemplate, baseUrl + COMPLETION_PATH, requestBody, GptResponse.class);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            GptResponse response = hedged
+                    ? callGuard.callHedged(YandexCallGuard.Endpoint.COMPLETION, request)
+                    : callGuard.call(YandexCallGuard.Endpoint.COMPLETION, request);
+
+            if (response != null && response.getResult() != null && !response.getResult().getAlternatives().isEmpty()) {
+                recordUsage(operation, response.getResult().getUsage());
+                String answer = response.getResult().getAlternatives().get(0).getMessage().getText();
+                log.debug("Received response from Yandex GPT: {}", answer);
+                outcome = "success";
+                return answer;
+            }
+
+            log.warn("Received empty response from Yandex GPT");
+            outcome = "empty";
+            return EMPTY_ANSWER;
+        } finally {
+            sample.stop(requestTimer(operation, outcome));
+        }
+    }
+
+    private String askModelStreaming(String prompt, Consumer<String> onPartial) {
+        log.debug("Sending streaming request to Yandex GPT, prompt of {} chars", prompt.length());
+        log.trace("Prompt: '{}'", prompt);
+
+        Map<String, Object> requestBody = completionRequest(prompt, 0.6, true);
+
+        RequestCallback requestCallback = request -> {
+            request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            request.getHeaders().setBearerAuth(apiKey);
+            objectMapper.writeValue(request.getBody(), requestBody);
+        };
+
+        GptResponse.Usage[] usage = new GptResponse.Usage[1];
+        ResponseExtractor<String> responseExtractor = response -> {
+            String text = null;
+            BufferedReader reader = new BufferedReader(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                GptResponse chunk = objectMapper.readValue(line, GptResponse.class);
+                if (chunk.getResult() != null && chunk.getResult().getAlternatives() != null
+                        && !chunk.getResult().getAlternatives().isEmpty()) {
+                    text = chunk.getResult().getAlternatives().get(0).getMessage().getText();
+                    onPartial.accept(text);
+                }
+                if (chunk.getResult() != null && chunk.getResult().getUsage() != null) {
+                    usage[0] = chunk.getResult().getUsage();
+                }
+            }
+            return text;
+        };
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        String answer;
+        try {
+            answer = callGuard.call(YandexCallGuard.Endpoint.COMPLETION, () -> {
+                try {
+                    return completionRestTemplate.execute(baseUrl + COMPLETION_PATH, HttpMethod.POST, requestCallback, responseExtractor);
+                } catch (HttpClientErrorException | HttpServerErrorException e) {
+                    log.error("HTTP error from Yandex API: Status {}, Response: {}", e.getStatusCode(), e.getResponseBodyAsString());
+                    throw new RuntimeException("Yandex API request failed: " + e.getMessage(), e);
+                } catch (RestClientException e) {
+                    log.error("RestClient error: {}", e.getMessage(), e);
+                    throw new RuntimeException("Failed to connect to Yandex API", e);
+                }
+            });
+            recordUsage("complete_answer_streaming", usage[0]);
+            outcome = answer == null || answer.isBlank() ? "empty" : "success";
+        } finally {
+            sample.stop(requestTimer("complete_answer_streaming", outcome));
+        }
+
+        if (answer == null || answer.isBlank()) {
+            log.warn("Received empty streaming response from Yandex GPT");
+            return EMPTY_ANSWER;
+        }
+        log.debug("Received streamed response from Yandex GPT: {}", answer);
+        return answer;
+    }
+
+    private Timer requestTimer(String operation, String outcome) {
+        return Timer.builder("yandex.gpt.request")
+                .description("Latency of a Yandex API call, including waiting in the call guard")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private void recordUsage(String operation, GptResponse.Usage usage) {
+        if (usage == null) {
+            return;
+        }
+        recordTokens(operation, "input", parseTokens(usage.getInputTextTokens()), completionPricePer1k);
+        recordTokens(operation, "completion", parseTokens(usage.getCompletionTokens()), completionPricePer1k);
+    }
+
+    /**
+     * Counts billed tokens and their estimated cost in rubles; Yandex API reports token counts as strings.
+     */
+    private void recordTokens(String operation, String type, long tokens, double pricePer1k) {
+        if (tokens <= 0) {
+            return;
+        }
+        Counter.builder("yandex.gpt.tokens")
+                .tag("operation", operation)
+                .tag("type", type)
+                .register(meterRegistry)
+                .increment(tokens);
+        Counter.builder("yandex.gpt.cost")
+                .baseUnit("rubles")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .increment(tokens * pricePer1k / 1000);
+    }
+
+    private static long parseTokens(String tokens) {
+        try {
+            return tokens == null ? 0 : Long.parseLong(tokens);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private Map<String, Object> completionRequest(String prompt, double temperature, boolean stream) {
+        return Map.of(
                 "modelUri", "gpt://" + folderId + "/yandexgpt-lite",
                 "completionOptions", Map.of(
-                        "stream", false,
-                        "temperature", 0.6,
+                        "stream", stream,
+                        "temperature", temperature,
                         "maxTokens", 500
                 ),
                 "messages", List.of(
@@ -147,20 +426,9 @@ public class YandexGptService {
                         Map.of("role", "user", "text", prompt)
                 )
         );
-
-        GptResponse response = postRequest(COMPLETION_URL, requestBody, GptResponse.class);
-
-        if (response != null && response.getResult() != null && !response.getResult().getAlternatives().isEmpty()) {
-            String answer = response.getResult().getAlternatives().get(0).getMessage().getText();
-            log.info("Received response from Yandex GPT: {}", answer);
-            return answer;
-        }
-
-        log.warn("Received empty response from Yandex GPT");
-        return "Извини, я не нашел ответа на твой вопрос. Попробуй переформулировать его";
     }
 
-    private <T> T postRequest(String url, Object body, Class<T> responseType) {
+    private <T> T postRequest(RestTemplate restTemplate, String url, Object body, Class<T> responseType) {
         log.debug("Sending POST request to Yandex API: {}", url);
 
         HttpHeaders headers = new HttpHeaders();
@@ -182,14 +450,42 @@ public class YandexGptService {
         }
     }
 
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private static class AnalysisResponse {
+        private Boolean isStudy;
+        private Boolean isLocationLookup;
+        private List<String> tags;
+    }
+
+    /**
+     * Embedding values are read by Jackson's primitive array deserializer straight into {@code float[]}.
+     */
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class EmbeddingResponse {
+        private float[] embedding;
+        private String numTokens;
+        private String modelVersion;
+    }
+
     @Data
     @JsonInclude(JsonInclude.Include.NON_NULL)
     public static class GptResponse {
         private Result result;
 
         @Data
+        @JsonIgnoreProperties(ignoreUnknown = true)
         public static class Result {
             private List<Alternative> alternatives;
+            private Usage usage;
+        }
+
+        @Data
+        public static class Usage {
+            private String inputTextTokens;
+            private String completionTokens;
+            private String totalTokens;
         }
 
         @Data
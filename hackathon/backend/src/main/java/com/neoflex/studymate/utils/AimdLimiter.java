@@ -0,0 +1,100 @@
+package com.neoflex.studymate.utils;
+
+import java.time.Duration;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit that grows by one per limit-worth of successful calls made at full capacity and halves on failure,
+ * bounded by {@code [minLimit, maxLimit]}. {@code maxLimit} acts as a hard bulkhead for the protected resource.
+ */
+public class AimdLimiter {
+
+    private static final double BACKOFF_RATIO = 0.5;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final int minLimit;
+    private final int maxLimit;
+    private double limit;
+    private int inFlight;
+
+    public AimdLimiter(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Expected 1 <= minLimit <= maxLimit");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.clamp(initialLimit, minLimit, maxLimit);
+    }
+
+    /**
+     * Waits up to {@code maxWait} for a slot; returns {@code false} if none became free.
+     */
+    public boolean acquire(Duration maxWait) throws InterruptedException {
+        long remaining = maxWait.toNanos();
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = released.awaitNanos(remaining);
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release(boolean success) {
+        lock.lock();
+        try {
+            // success below the limit says nothing about whether a higher limit would be safe
+            boolean saturated = inFlight >= (int) limit;
+            inFlight--;
+            if (success) {
+                if (saturated) {
+                    limit = Math.min(maxLimit, limit + 1 / limit);
+                }
+            } else {
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases the slot without adjusting the limit, e.g. when the call was rejected before reaching upstream.
+     */
+    public void releaseIgnored() {
+        lock.lock();
+        try {
+            inFlight--;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int limit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.neoflex.studymate.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Packs retrieved passages into a prompt context of bounded size. Passages are taken in the given (score) order,
+ * near-duplicates of an earlier passage are skipped, and each passage is trimmed to the sentences sharing the most
+ * words with the query, until the token budget is spent.
+ * <p>
+ * Token counts are estimated from the text length; the estimate errs on the high side for Russian text,
+ * so the packed context stays within the budget of the real tokenizer.
+ */
+public final class ContextPacker {
+
+    private static final double CHARS_PER_TOKEN = 3.0;
+    private static final int STEM_LENGTH = 5;
+    private static final int MIN_WORD_LENGTH = 3;
+    private static final int MIN_PASSAGE_TOKENS = 30;
+    private static final String GAP = " … ";
+
+    private static final Pattern SENTENCE_END = Pattern.compile("(?<=[.!?…])\\s+|\\n+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final int budgetTokens;
+    private final int maxPassageTokens;
+    private final double duplicateSimilarity;
+
+    public ContextPacker(int budgetTokens, int maxPassageTokens, double duplicateSimilarity) {
+        this.budgetTokens = budgetTokens;
+        this.maxPassageTokens = maxPassageTokens;
+        this.duplicateSimilarity = duplicateSimilarity;
+    }
+
+    public record Passage(String title, String text) {
+    }
+
+    public record Packed(String context, int tokens, int passages, int duplicates) {
+    }
+
+    public Packed pack(String query, List<Passage> passages) {
+        Set<String> queryStems = stems(query);
+        List<Set<String>> kept = new ArrayList<>();
+        StringBuilder context = new StringBuilder();
+        int used = 0;
+        int packed = 0;
+        int duplicates = 0;
+
+        for (Passage passage : passages) {
+            if (passage.text() == null || passage.text().isBlank()) {
+                continue;
+            }
+            Set<String> shingles = shingles(passage.text());
+            if (kept.stream().anyMatch(other -> jaccard(shingles, other) >= duplicateSimilarity)) {
+                duplicates++;
+                continue;
+            }
+
+            String header = (context.isEmpty() ? "" : "\n\n") + "[" + (packed + 1) + "] "
+                    + (passage.title() == null ? "" : passage.title()) + "\n";
+            int available = Math.min(maxPassageTokens, budgetTokens - used - estimateTokens(header));
+            if (available < MIN_PASSAGE_TOKENS) {
+                break;
+            }
+            String text = trim(passage.text(), queryStems, available);
+            if (text.isEmpty()) {
+                continue;
+            }
+            context.append(header).append(text);
+            used += estimateTokens(header) + estimateTokens(text);
+            kept.add(shingles);
+            packed++;
+        }
+        return new Packed(context.toString(), used, packed, duplicates);
+    }
+
+    public static int estimateTokens(String text) {
+        return (int) Math.ceil(text.length() / CHARS_PER_TOKEN);
+    }
+
+    /**
+     * Keeps the sentences with the most query words that fit into {@code maxTokens}, in their original order;
+     * falls back to the leading sentences when none mention the query.
+     */
+    static String trim(String text, Set<String> queryStems, int maxTokens) {
+        if (estimateTokens(text) <= maxTokens) {
+            return text.strip();
+        }
+        List<String> sentences = SENTENCE_END.splitAsStream(text).map(String::strip).filter(s -> !s.isEmpty()).toList();
+        int[] scores = sentences.stream().mapToInt(sentence -> overlap(stems(sentence), queryStems)).toArray();
+
+        List<Integer> order = IntStream.range(0, sentences.size()).boxed()
+                .sorted(Comparator.<Integer>comparingInt(i -> -scores[i]).thenComparingInt(i -> i))
+                .toList();
+        boolean[] selected = new boolean[sentences.size()];
+        int used = 0;
+        for (int i : order) {
+            int cost = estimateTokens(sentences.get(i)) + estimateTokens(GAP);
+            if (used + cost <= maxTokens) {
+                selected[i] = true;
+                used += cost;
+            }
+        }
+
+        StringBuilder trimmed = new StringBuilder();
+        for (int i = 0; i < sentences.size(); i++) {
+            if (selected[i]) {
+                if (!trimmed.isEmpty()) {
+                    trimmed.append(i > 0 && selected[i - 1] ? " " : GAP);
+                }
+                trimmed.append(sentences.get(i));
+            }
+        }
+        if (trimmed.isEmpty() && !sentences.isEmpty()) {
+            // not even one sentence fits, e.g. a code listing without punctuation
+            String first = sentences.get(order.get(0));
+            trimmed.append(first, 0, Math.min(first.length(), (int) (maxTokens * CHARS_PER_TOKEN)));
+        }
+        return trimmed.toString();
+    }
+
+    /**
+     * Lower-cased word prefixes, a cheap substitute for stemming that matches most Russian inflections.
+     */
+    static Set<String> stems(String text) {
+        Set<String> stems = new HashSet<>();
+        for (String word : NON_WORD.split(text.toLowerCase(Locale.ROOT))) {
+            if (word.length() >= MIN_WORD_LENGTH) {
+                stems.add(word.length() > STEM_LENGTH ? word.substring(0, STEM_LENGTH) : word);
+            }
+        }
+        return stems;
+    }
+
+    private static int overlap(Set<String> stems, Set<String> queryStems) {
+        int overlap = 0;
+        for (String stem : stems) {
+            if (queryStems.contains(stem)) {
+                overlap++;
+            }
+        }
+        return overlap;
+    }
+
+    private static Set<String> shingles(String text) {
+        String[] words = NON_WORD.split(text.toLowerCase(Locale.ROOT));
+        Set<String> shingles = new HashSet<>();
+        for (int i = 0; i + 2 < words.length; i++) {
+            shingles.add(words[i] + ' ' + words[i + 1] + ' ' + words[i + 2]);
+        }
+        return shingles;
+    }
+
+    private static double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0;
+        }
+        Set<String> smaller = a.size() <= b.size() ? a : b;
+        Set<String> larger = smaller == a ? b : a;
+        int common = 0;
+        for (String shingle : smaller) {
+            if (larger.contains(shingle)) {
+                common++;
+            }
+        }
+        return (double) common / (a.size() + b.size() - common);
+    }
+}
@@ -0,0 +1,47 @@
+package com.neoflex.studymate.utils;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caps hedged requests to a share of calls: every call earns {@code ratio} of a hedge, a hedge spends one,
+ * and unspent credit is capped at {@code maxBurst}. When latency degrades for all calls alike the budget runs out
+ * after a few hedges instead of doubling the load on the upstream.
+ */
+public class HedgeBudget {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final double ratio;
+    private final double maxBurst;
+    private double balance;
+
+    public HedgeBudget(double ratio, double maxBurst) {
+        if (ratio < 0 || maxBurst < 1) {
+            throw new IllegalArgumentException("Expected ratio >= 0 and maxBurst >= 1");
+        }
+        this.ratio = ratio;
+        this.maxBurst = maxBurst;
+        this.balance = maxBurst;
+    }
+
+    public void onCall() {
+        lock.lock();
+        try {
+            balance = Math.min(maxBurst, balance + ratio);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean tryHedge() {
+        lock.lock();
+        try {
+            if (balance < 1) {
+                return false;
+            }
+            balance -= 1;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.neoflex.studymate.utils;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Latencies of the most recent calls, used to derive percentiles such as the hedging delay.
+ */
+public class LatencyWindow {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final long[] samples;
+    private int count;
+    private int position;
+
+    public LatencyWindow(int size) {
+        this.samples = new long[size];
+    }
+
+    public void record(long nanos) {
+        lock.lock();
+        try {
+            samples[position] = nanos;
+            position = (position + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns {@code null} until at least {@code minSamples} latencies were recorded.
+     */
+    public Duration percentile(double p, int minSamples) {
+        long[] copy;
+        lock.lock();
+        try {
+            if (count < Math.max(1, minSamples)) {
+                return null;
+            }
+            copy = Arrays.copyOf(samples, count);
+        } finally {
+            lock.unlock();
+        }
+        Arrays.sort(copy);
+        return Duration.ofNanos(copy[Math.min(copy.length - 1, (int) Math.ceil(p * copy.length) - 1)]);
+    }
+}
@@ -0,0 +1,88 @@
+package com.neoflex.studymate.utils;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API implementations behind {@link VectorMath}; only loaded when the incubator module is present.
+ * <p>
+ * All species share one shape: bytes are loaded as a full vector and widened part by part, so the kernels work
+ * with any shape down to 64 bits (NEON and SSE included). A record, so the JIT treats the species as constants.
+ */
+record SimdKernels(VectorSpecies<Float> floats, VectorSpecies<Byte> bytes,
+                   VectorSpecies<Short> shorts, VectorSpecies<Integer> ints) {
+
+    static final SimdKernels PREFERRED = forShape(VectorShape.preferredShape());
+
+    static SimdKernels forShape(VectorShape shape) {
+        return new SimdKernels(VectorSpecies.of(float.class, shape), VectorSpecies.of(byte.class, shape),
+                VectorSpecies.of(short.class, shape), VectorSpecies.of(int.class, shape));
+    }
+
+    String description() {
+        return floats.length() + " float lanes";
+    }
+
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector sum = FloatVector.zero(floats);
+        int i = 0;
+        int bound = floats.loopBound(length);
+        for (; i < bound; i += floats.length()) {
+            FloatVector va = FloatVector.fromArray(floats, a, aOffset + i);
+            FloatVector vb = FloatVector.fromArray(floats, b, bOffset + i);
+            sum = va.fma(vb, sum);
+        }
+        float dot = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            dot += a[aOffset + i] * b[bOffset + i];
+        }
+        return dot;
+    }
+
+    float dot(float[] query, byte[] quantized, int offset, int length) {
+        // one byte vector widens into bytes.length() / floats.length() float vectors
+        int parts = bytes.length() / floats.length();
+        FloatVector sum = FloatVector.zero(floats);
+        int i = 0;
+        int bound = bytes.loopBound(length);
+        for (; i < bound; i += bytes.length()) {
+            ByteVector vb = ByteVector.fromArray(bytes, quantized, offset + i);
+            for (int part = 0; part < parts; part++) {
+                FloatVector vq = FloatVector.fromArray(floats, query, i + part * floats.length());
+                sum = vq.fma((FloatVector) vb.convertShape(VectorOperators.B2F, floats, part), sum);
+            }
+        }
+        float dot = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            dot += query[i] * quantized[offset + i];
+        }
+        return dot;
+    }
+
+    int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        // int8 products fit into int16 lanes; they are widened to int32 before summing
+        IntVector sum = IntVector.zero(ints);
+        int i = 0;
+        int bound = bytes.loopBound(length);
+        for (; i < bound; i += bytes.length()) {
+            ByteVector va = ByteVector.fromArray(bytes, a, aOffset + i);
+            ByteVector vb = ByteVector.fromArray(bytes, b, bOffset + i);
+            for (int half = 0; half < 2; half++) {
+                ShortVector product = ((ShortVector) va.convertShape(VectorOperators.B2S, shorts, half))
+                        .mul((ShortVector) vb.convertShape(VectorOperators.B2S, shorts, half));
+                sum = sum.add((IntVector) product.convertShape(VectorOperators.S2I, ints, 0))
+                        .add((IntVector) product.convertShape(VectorOperators.S2I, ints, 1));
+            }
+        }
+        int dot = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            dot += a[aOffset + i] * b[bOffset + i];
+        }
+        return dot;
+    }
+}
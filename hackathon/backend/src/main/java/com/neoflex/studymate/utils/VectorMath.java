@@ -0,0 +1,97 @@
+package com.neoflex.studymate.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Dot-product kernels for embedding vectors. Uses the JDK Vector API when the {@code jdk.incubator.vector}
+ * module is available (and {@code -Dstudymate.vector.simd=false} is not set), plain loops otherwise.
+ */
+@Slf4j
+public final class VectorMath {
+
+    private static final boolean SIMD = detectSimd();
+
+    private VectorMath() {
+    }
+
+    public static boolean simdEnabled() {
+        return SIMD;
+    }
+
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        return SIMD ? SimdKernels.PREFERRED.dot(a, aOffset, b, bOffset, length) : scalarDot(a, aOffset, b, bOffset, length);
+    }
+
+    public static float dot(float[] a, float[] b) {
+        return dot(a, 0, b, 0, a.length);
+    }
+
+    /**
+     * Dot product of a float query with an int8-quantized vector, before applying the vector's scale.
+     */
+    public static float dot(float[] query, byte[] quantized, int offset, int length) {
+        return SIMD ? SimdKernels.PREFERRED.dot(query, quantized, offset, length) : scalarDot(query, quantized, offset, length);
+    }
+
+    public static int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        return SIMD ? SimdKernels.PREFERRED.dot(a, aOffset, b, bOffset, length) : scalarDot(a, aOffset, b, bOffset, length);
+    }
+
+    /**
+     * Returns a unit-length copy of the vector; a zero vector is returned unchanged.
+     */
+    public static float[] normalize(float[] vector) {
+        float[] normalized = vector.clone();
+        double norm = Math.sqrt(dot(vector, vector));
+        if (norm == 0) {
+            return normalized;
+        }
+        float scale = (float) (1 / norm);
+        for (int i = 0; i < normalized.length; i++) {
+            normalized[i] *= scale;
+        }
+        return normalized;
+    }
+
+    static float scalarDot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float dot = 0;
+        for (int i = 0; i < length; i++) {
+            dot += a[aOffset + i] * b[bOffset + i];
+        }
+        return dot;
+    }
+
+    static float scalarDot(float[] query, byte[] quantized, int offset, int length) {
+        float dot = 0;
+        for (int i = 0; i < length; i++) {
+            dot += query[i] * quantized[offset + i];
+        }
+        return dot;
+    }
+
+    static int scalarDot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        int dot = 0;
+        for (int i = 0; i < length; i++) {
+            dot += a[aOffset + i] * b[bOffset + i];
+        }
+        return dot;
+    }
+
+    private static boolean detectSimd() {
+        if (!Boolean.parseBoolean(System.getProperty("studymate.vector.simd", "true"))
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            log.info("Vector API is not enabled, using scalar similarity kernels");
+            return false;
+        }
+        try {
+            SimdKernels.PREFERRED.dot(new float[]{1}, 0, new float[]{1}, 0, 1);
+            log.info("Using Vector API similarity kernels ({})", SimdKernels.PREFERRED.description());
+            return true;
+        } catch (LinkageError | UnsupportedOperationException | IllegalArgumentException e) {
+            // LinkageError covers a missing module and a species that failed in the static initializer
+            Throwable reason = e instanceof ExceptionInInitializerError && e.getCause() != null ? e.getCause() : e;
+            log.warn("Vector API kernels are unavailable, using scalar ones: {}", reason.toString(), reason);
+            return false;
+        }
+    }
+}
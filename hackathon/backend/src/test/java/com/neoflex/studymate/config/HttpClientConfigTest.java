@@ -0,0 +1,116 @@
+package com.neoflex.studymate.config;
+
+import com.neoflex.studymate.services.yandex.EmbeddingCache;
+import com.neoflex.studymate.services.yandex.TestCallGuards;
+import com.neoflex.studymate.services.yandex.YandexGptService;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HttpClientConfigTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TestHttpClients httpClients = new TestHttpClients();
+    private HttpServer server;
+    private String baseUrl;
+
+    @BeforeEach
+    void startStub() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/foundationModels/v1/textEmbedding", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = "{\"embedding\":[0.25,-0.5,1.0],\"numTokens\":\"3\",\"modelVersion\":\"test\"}"
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(1500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopStub() {
+        httpClients.close();
+        server.stop(0);
+    }
+
+    @Test
+    void embeddingsAreReadIntoFloatArraysOverPooledConnections() {
+        YandexGptService service = embeddingService();
+
+        assertArrayEquals(new float[]{0.25f, -0.5f, 1.0f}, service.getEmbedding("первый"));
+        assertArrayEquals(new float[]{0.25f, -0.5f, 1.0f}, service.getEmbedding("второй"));
+
+        Timer ttfb = meterRegistry.find("http.client.ttfb").tags("endpoint", "yandex-embedding", "outcome", "success").timer();
+        assertNotNull(ttfb);
+        assertEquals(2, ttfb.count());
+        assertEquals(4.0, meterRegistry.get("httpcomponents.httpclient.pool.total.max")
+                .tag("httpclient", "yandex-embedding").gauge().value());
+        assertEquals(1.0, meterRegistry.get("httpcomponents.httpclient.pool.total.connections")
+                .tag("httpclient", "yandex-embedding").tag("state", "available").gauge().value());
+    }
+
+    @Test
+    void documentEmbeddingsBypassTheQueryCache() {
+        YandexGptService service = embeddingService();
+
+        service.getEmbedding("вопрос");
+        service.getEmbedding("вопрос");
+        service.embedDocument("глава");
+        service.embedDocument("глава");
+
+        assertEquals(3, meterRegistry.get("http.client.ttfb").tags("endpoint", "yandex-embedding", "outcome", "success")
+                .timer().count());
+    }
+
+    @Test
+    void readTimeoutIsApplied() {
+        RestTemplate restTemplate = httpClients.pooledRestTemplate("slow",
+                Duration.ofSeconds(1), Duration.ofMillis(300), 2, meterRegistry);
+
+        assertThrows(ResourceAccessException.class, () -> restTemplate.getForEntity(baseUrl + "/slow", String.class));
+        assertEquals(1, meterRegistry.get("http.client.ttfb").tags("endpoint", "slow", "outcome", "error").timer().count());
+    }
+
+    private YandexGptService embeddingService() {
+        RestTemplate restTemplate = httpClients.pooledRestTemplate("yandex-embedding",
+                Duration.ofSeconds(1), Duration.ofSeconds(2), 4, meterRegistry);
+        YandexGptService service = new YandexGptService(restTemplate, restTemplate,
+                new EmbeddingCache(null, 100, false), Jackson2ObjectMapperBuilder.json().build(),
+                TestCallGuards.fromApplicationYaml(meterRegistry, Map.of()), meterRegistry);
+        ReflectionTestUtils.setField(service, "apiKey", "test-key");
+        ReflectionTestUtils.setField(service, "folderId", "test-folder");
+        ReflectionTestUtils.setField(service, "baseUrl", baseUrl);
+        return service;
+    }
+}
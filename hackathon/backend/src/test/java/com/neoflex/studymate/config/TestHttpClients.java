@@ -0,0 +1,24 @@
+package com.neoflex.studymate.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+
+/**
+ * Pooled, instrumented {@link RestTemplate}s built like the {@link HttpClientConfig} beans; closing releases their pools.
+ */
+public final class TestHttpClients implements AutoCloseable {
+
+    private final HttpClientConfig config = new HttpClientConfig();
+
+    public RestTemplate pooledRestTemplate(String endpoint, Duration connectTimeout, Duration readTimeout,
+                                           int maxConnections, MeterRegistry meterRegistry) {
+        return config.register(endpoint, connectTimeout, readTimeout, maxConnections, meterRegistry);
+    }
+
+    @Override
+    public void close() {
+        config.closeClients();
+    }
+}
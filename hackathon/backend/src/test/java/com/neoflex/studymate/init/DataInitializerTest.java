@@ -0,0 +1,51 @@
+package com.neoflex.studymate.init;
+
+import com.neoflex.studymate.services.chunk.BackfillProgress;
+import com.neoflex.studymate.services.chunk.ChunkIngestionPipeline;
+import com.neoflex.studymate.services.chunk.ChunkService;
+import com.neoflex.studymate.services.chunk.EmbeddingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class DataInitializerTest {
+
+    private final EmbeddingService embeddingService = mock(EmbeddingService.class);
+    private final ChunkService chunkService = mock(ChunkService.class);
+    private final DataInitializer initializer = new DataInitializer(embeddingService, chunkService,
+            mock(ChunkIngestionPipeline.class));
+
+    @Test
+    void shutdownCancelsTheBackfillInsteadOfFailingIt() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            Thread.sleep(Long.MAX_VALUE);
+            return null;
+        }).when(embeddingService).fillChunkEmbeddings(any(BackfillProgress.class));
+        ReflectionTestUtils.setField(initializer, "enabled", true);
+
+        initializer.startInBackground();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        initializer.stop();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (initializer.state() == DataInitializer.State.RUNNING && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(DataInitializer.State.CANCELLED, initializer.state());
+        assertNull(initializer.error());
+        verify(chunkService, never()).addTagsToEmptyChunks(any(BackfillProgress.class));
+    }
+}
@@ -0,0 +1,243 @@
+package com.neoflex.studymate.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neoflex.studymate.services.chunk.ChunkService;
+import com.neoflex.studymate.services.chunk.EmbeddingService;
+import com.neoflex.studymate.services.search.TagIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Sends synthetic webhook traffic at increasing rates through the whole bot pipeline, with Yandex and Telegram
+ * replaced by local stubs and a seeded pgvector database, and reports throughput and end-to-end latency
+ * (webhook accepted to first message delivered to the chat).
+ * <p>
+ * Run with {@code mvn -Pload test}; stage rates, stage length, corpus size and stub behaviour are set
+ * with the {@code load.*} system properties below.
+ */
+@Slf4j
+@Tag("load")
+@Testcontainers
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class BotLoadTest {
+
+    private static final String[] VOCABULARY = {
+            "индекс", "транзакция", "блокировка", "репликация", "шардирование", "нормализация", "запрос", "представление",
+            "триггер", "процедура", "курсор", "секционирование", "кластеризация", "хеширование", "сортировка",
+            "соединение", "агрегация", "оптимизатор", "статистика", "журнал", "контрольная", "изоляция", "согласованность",
+            "доступность", "кэширование", "очередь", "сообщение", "брокер", "протокол", "сериализация"
+    };
+
+    private static final double[] RATES = Arrays.stream(System.getProperty("load.rates", "5,20,50").split(","))
+            .mapToDouble(Double::parseDouble).toArray();
+    private static final Duration STAGE = Duration.ofSeconds(Long.getLong("load.stage-seconds", 30));
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(Long.getLong("load.drain-seconds", 120));
+    private static final int CHUNKS = Integer.getInteger("load.chunks", 2000);
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(
+            DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"))
+            .withInitScript("load/init.sql");
+
+    static final YandexStub YANDEX;
+    static final TelegramStub TELEGRAM;
+
+    static {
+        try {
+            YANDEX = new YandexStub(
+                    LatencyProfile.ofMillis(Long.getLong("load.yandex.completion-median-ms", 400), Long.getLong("load.yandex.completion-p99-ms", 2000)),
+                    LatencyProfile.ofMillis(Long.getLong("load.yandex.embedding-median-ms", 50), Long.getLong("load.yandex.embedding-p99-ms", 300)),
+                    Double.parseDouble(System.getProperty("load.yandex.error-rate", "0.01")),
+                    Integer.getInteger("load.yandex.stream-parts", 5));
+            TELEGRAM = new TelegramStub(
+                    LatencyProfile.ofMillis(Long.getLong("load.telegram.median-ms", 40), Long.getLong("load.telegram.p99-ms", 250)),
+                    Double.parseDouble(System.getProperty("load.telegram.rate-limited-rate", "0.01")));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+        registry.add("spring.liquibase.enabled", () -> "true");
+        registry.add("spring.jpa.show-sql", () -> "false");
+        registry.add("yandex.api.base-url", YANDEX::baseUrl);
+        registry.add("yandex.api.api-key", () -> "load-test");
+        registry.add("yandex.api.folder-id", () -> "load-test");
+        registry.add("app.bot.api-url", TELEGRAM::baseUrl);
+        registry.add("app.bot.token", () -> "load-test");
+        registry.add("app.init.enabled", () -> "false");
+        registry.add("app.bot.streaming.enabled", () -> System.getProperty("load.streaming", "false"));
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ChunkService chunkService;
+    @Autowired
+    private EmbeddingService embeddingService;
+    @Autowired
+    private TagIndex tagIndex;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    private final AtomicLong updateIds = new AtomicLong();
+
+    @BeforeAll
+    void seed() throws InterruptedException {
+        SplittableRandom random = new SplittableRandom(1);
+        for (long course = 1; course <= 5; course++) {
+            jdbcTemplate.update("INSERT INTO dm.courses (id, name) VALUES (?, ?)", course, "Курс " + course);
+        }
+        for (long file = 1; file <= 20; file++) {
+            jdbcTemplate.update("INSERT INTO dm.downloaded_files (id, name, course_id) VALUES (?, ?, ?)",
+                    file, "Лекция " + file + ".pdf", (file - 1) % 5 + 1);
+        }
+        List<Object[]> chunks = new ArrayList<>(CHUNKS);
+        for (long id = 1; id <= CHUNKS; id++) {
+            chunks.add(new Object[]{id, "Раздел " + id, (id - 1) % 20 + 1, "https://docs.example.org/" + id,
+                    sentence(random, 40), Timestamp.from(Instant.now())});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO dm.chunks (id, title_name, id_file, source_url, content, created_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?)", chunks);
+
+        chunkService.addTagsToEmptyChunks();
+        embeddingService.fillChunkEmbeddings();
+        tagIndex.reload();
+    }
+
+    @AfterAll
+    void stopStubs() {
+        YANDEX.close();
+        TELEGRAM.close();
+    }
+
+    @Test
+    void reportsThroughputAndLatencyPerRate() throws IOException {
+        List<LoadReport> reports = new ArrayList<>();
+        for (double rate : RATES) {
+            reports.add(runStage(rate));
+        }
+
+        log.info(LoadReport.header());
+        reports.forEach(report -> log.info(report.row()));
+        log.info("Yandex stub: {} requests, {} injected errors; Telegram stub: {} rate-limited responses",
+                YANDEX.requests(), YANDEX.errors(), TELEGRAM.rateLimited());
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(new File("target/load-report.json"), reports);
+
+        reports.forEach(report -> assertEquals(0, report.unanswered(),
+                "updates without any reply at " + report.targetRate() + "/s"));
+    }
+
+    private LoadReport runStage(double rate) {
+        int total = (int) Math.round(rate * STAGE.toSeconds());
+        long[] chatIds = new long[total];
+        long[] sentAt = new long[total];
+        long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long stageId = updateIds.get() + 1;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            LockSupport.parkNanos(start + i * periodNanos - System.nanoTime());
+            chatIds[i] = stageId * 1_000_000 + i;
+            sentAt[i] = System.nanoTime();
+            postUpdate(chatIds[i], question(new SplittableRandom(chatIds[i])));
+        }
+
+        long deadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline && Arrays.stream(chatIds).anyMatch(id -> TELEGRAM.firstReply(id) == null)) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(200));
+        }
+
+        List<Long> latencies = new ArrayList<>();
+        long lastReply = start;
+        int degraded = 0;
+        for (int i = 0; i < total; i++) {
+            TelegramStub.Reply reply = TELEGRAM.firstReply(chatIds[i]);
+            if (reply == null) {
+                continue;
+            }
+            latencies.add(reply.receivedAtNanos() - sentAt[i]);
+            lastReply = Math.max(lastReply, reply.receivedAtNanos());
+            if (!reply.text().contains("Расположение информации")) {
+                degraded++;
+            }
+        }
+        return LoadReport.of(rate, total, degraded, latencies.stream().mapToLong(Long::longValue).toArray(),
+                (lastReply - start) / 1e9);
+    }
+
+    private void postUpdate(long chatId, String text) {
+        Map<String, Object> update = Map.of(
+                "update_id", updateIds.incrementAndGet(),
+                "message", Map.of("message_id", 1, "chat", Map.of("id", chatId, "type", "private"), "text", text));
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/telegram/webhook"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(new ObjectMapper().writeValueAsBytes(update)))
+                    .build();
+            httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String question(SplittableRandom random) {
+        return "Что такое " + sentence(random, 3) + "?";
+    }
+
+    private static String sentence(SplittableRandom random, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(VOCABULARY[random.nextInt(VOCABULARY.length)]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,35 @@
+package com.neoflex.studymate.load;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Log-normal response time distribution described by its median and 99th percentile.
+ */
+record LatencyProfile(Duration median, Duration p99) {
+
+    private static final double Z_99 = 2.326;
+
+    static LatencyProfile ofMillis(long median, long p99) {
+        return new LatencyProfile(Duration.ofMillis(median), Duration.ofMillis(Math.max(median, p99)));
+    }
+
+    long sampleMillis() {
+        if (median.isZero()) {
+            return 0;
+        }
+        double sigma = Math.log((double) p99.toNanos() / median.toNanos()) / Z_99;
+        return Math.round(median.toMillis() * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+    }
+
+    void sleep() {
+        long millis = sampleMillis();
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
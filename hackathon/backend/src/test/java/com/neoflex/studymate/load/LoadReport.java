@@ -0,0 +1,38 @@
+package com.neoflex.studymate.load;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Outcome of one load stage: how many webhook updates were sent and answered, throughput and end-to-end latency.
+ */
+record LoadReport(double targetRate, int sent, int answered, int degraded, int unanswered,
+                  double throughput, double p50Millis, double p95Millis, double p99Millis, double maxMillis) {
+
+    static LoadReport of(double targetRate, int sent, int degraded, long[] latenciesNanos, double elapsedSeconds) {
+        long[] sorted = latenciesNanos.clone();
+        Arrays.sort(sorted);
+        int replied = sorted.length;
+        return new LoadReport(targetRate, sent, replied - degraded, degraded, sent - replied,
+                elapsedSeconds > 0 ? replied / elapsedSeconds : 0,
+                percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99),
+                replied == 0 ? 0 : sorted[replied - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)] / 1e6;
+    }
+
+    static String header() {
+        return String.format(Locale.ROOT, "%8s %6s %8s %8s %10s %10s %9s %9s %9s %9s",
+                "rate/s", "sent", "answered", "degraded", "unanswered", "replies/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+    }
+
+    String row() {
+        return String.format(Locale.ROOT, "%8.1f %6d %8d %8d %10d %10.1f %9.0f %9.0f %9.0f %9.0f",
+                targetRate, sent, answered, degraded, unanswered, throughput, p50Millis, p95Millis, p99Millis, maxMillis);
+    }
+}
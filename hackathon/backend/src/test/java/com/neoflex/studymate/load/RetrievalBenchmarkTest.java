@@ -0,0 +1,83 @@
+package com.neoflex.studymate.load;
+
+import com.neoflex.studymate.dto.ChunkCard;
+import com.neoflex.studymate.dto.QueryAnalysis;
+import com.neoflex.studymate.services.search.HybridSearchService;
+import com.neoflex.studymate.services.search.VectorDbService;
+import com.neoflex.studymate.services.yandex.YandexGptService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Compares the tag-based candidate selection with hybrid retrieval on the given queries, against the database and
+ * Yandex account of the active configuration. Model calls are made once per query and excluded from timings.
+ * <p>
+ * Run with {@code mvn -Pload test -Dtest=RetrievalBenchmarkTest -Dbenchmark.queries="first query,second query"};
+ * {@code -Dbenchmark.iterations} sets the number of timed searches per query.
+ */
+@Slf4j
+@Tag("load")
+@EnabledIfSystemProperty(named = "benchmark.queries", matches = ".*\\S.*")
+@SpringBootTest
+class RetrievalBenchmarkTest {
+
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 20);
+
+    @Autowired
+    private HybridSearchService hybridSearchService;
+    @Autowired
+    private VectorDbService vectorDbService;
+    @Autowired
+    private YandexGptService yandexGptService;
+
+    @Test
+    void compareTagAndHybridRetrieval() {
+        for (String query : System.getProperty("benchmark.queries").split(",")) {
+            if (query.isBlank()) {
+                continue;
+            }
+            QueryAnalysis analysis = yandexGptService.analyzeQuery(query.strip());
+            float[] embedding = vectorDbService.embedQuery(query.strip());
+
+            Result tags = measure(() -> hybridSearchService.searchByTags(embedding, analysis.getTags()));
+            Result hybrid = measure(() -> hybridSearchService.search(query.strip(), embedding, analysis.getTags()));
+
+            log.info("Benchmark '{}': tags {} -> tag path p50={} ms p95={} ms, {} candidates, top {}; " +
+                            "hybrid p50={} ms p95={} ms, {} candidates, top {}",
+                    query.strip(), analysis.getTags(),
+                    tags.p50Millis(), tags.p95Millis(), tags.candidates(), tags.topIds(),
+                    hybrid.p50Millis(), hybrid.p95Millis(), hybrid.candidates(), hybrid.topIds());
+        }
+    }
+
+    private static Result measure(Supplier<HybridSearchService.SearchResult> search) {
+        HybridSearchService.SearchResult last = search.get();
+        long[] timings = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            last = search.get();
+            timings[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(timings);
+        return new Result(percentile(timings, 0.5), percentile(timings, 0.95), last.candidateCount(),
+                last.chunks().stream().map(ChunkCard::id).toList().toString());
+    }
+
+    private static String percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return "-";
+        }
+        long nanos = sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+        return String.format("%.2f", nanos / 1e6);
+    }
+
+    private record Result(String p50Millis, String p95Millis, int candidates, String topIds) {
+    }
+}
@@ -0,0 +1,89 @@
+package com.neoflex.studymate.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the Telegram Bot API that records when the first reply reaches each chat.
+ * A share of requests is answered with 429 and {@code retry_after}, as Telegram does under load.
+ */
+class TelegramStub implements AutoCloseable {
+
+    record Reply(long receivedAtNanos, String text) {
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final LatencyProfile latency;
+    private final double rateLimitedRate;
+    private final Map<Long, Reply> firstReplies = new ConcurrentHashMap<>();
+    private final AtomicLong messageIds = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+
+    TelegramStub(LatencyProfile latency, double rateLimitedRate) throws IOException {
+        this.latency = latency;
+        this.rateLimitedRate = rateLimitedRate;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    Reply firstReply(long chatId) {
+        return firstReplies.get(chatId);
+    }
+
+    long rateLimited() {
+        return rateLimited.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+        String path = exchange.getRequestURI().getPath();
+        String method = path.substring(path.lastIndexOf('/') + 1);
+        latency.sleep();
+
+        if (ThreadLocalRandom.current().nextDouble() < rateLimitedRate) {
+            rateLimited.incrementAndGet();
+            respond(exchange, 429, Map.of("ok", false, "error_code", 429,
+                    "description", "Too Many Requests: retry after 1", "parameters", Map.of("retry_after", 1)));
+            return;
+        }
+
+        long chatId = request.path("chat_id").asLong();
+        if (method.equals("sendMessage") || method.equals("editMessageText")) {
+            firstReplies.putIfAbsent(chatId, new Reply(System.nanoTime(), request.path("text").asText()));
+        }
+        long messageId = method.equals("sendMessage") ? messageIds.incrementAndGet() : request.path("message_id").asLong();
+        respond(exchange, 200, Map.of("ok", true, "result", Map.of("message_id", messageId, "chat", Map.of("id", chatId))));
+    }
+
+    private void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
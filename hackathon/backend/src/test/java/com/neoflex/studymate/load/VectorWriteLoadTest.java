@@ -0,0 +1,133 @@
+package com.neoflex.studymate.load;
+
+import com.neoflex.studymate.services.chunk.EmbeddingService;
+import com.neoflex.studymate.services.chunk.VectorCopyWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Writes the same pages of vectors into {@code dm.chunks_vectors} with the text batch insert and with
+ * {@link VectorCopyWriter}, and logs wall time and bytes allocated by the writing thread for both.
+ * The schema mirrors the Liquibase changelog, including the unique embedding and the foreign key to {@code dm.chunks}.
+ * Run with {@code mvn -Pload test -Dtest=VectorWriteLoadTest}.
+ */
+@Slf4j
+@Tag("load")
+@Testcontainers
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class VectorWriteLoadTest {
+
+    private static final int ROWS = Integer.getInteger("load.vectors", 20_000);
+    private static final int PAGE = Integer.getInteger("load.vector-page", 200);
+    private static final int DIMENSIONS = 256;
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(
+            DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+
+    private JdbcTemplate jdbcTemplate;
+    private VectorCopyWriter copyWriter;
+    private final List<Row> rows = new ArrayList<>(ROWS);
+
+    @BeforeAll
+    void setUp() {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+                POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword(), true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        copyWriter = new VectorCopyWriter(jdbcTemplate, new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS vector");
+        jdbcTemplate.execute("CREATE SCHEMA IF NOT EXISTS dm");
+        jdbcTemplate.execute("CREATE TABLE dm.chunks (id BIGSERIAL PRIMARY KEY, title_name VARCHAR(255) NOT NULL, " +
+                "id_file BIGINT, source_url TEXT, content TEXT NOT NULL, created_at TIMESTAMPTZ)");
+        jdbcTemplate.execute("CREATE TABLE dm.chunks_vectors (chunk_id integer PRIMARY KEY, " +
+                "embedding vector(256) NOT NULL UNIQUE, " +
+                "CONSTRAINT fk_chunks_vectors_chunk FOREIGN KEY (chunk_id) REFERENCES dm.chunks(id) ON DELETE CASCADE)");
+        jdbcTemplate.update("INSERT INTO dm.chunks(id, title_name, content) " +
+                "SELECT id, 'chunk ' || id, 'content ' || id FROM generate_series(1, ?) id", ROWS);
+
+        SplittableRandom random = new SplittableRandom(7);
+        for (int id = 1; id <= ROWS; id++) {
+            float[] vector = new float[DIMENSIONS];
+            for (int i = 0; i < DIMENSIONS; i++) {
+                vector[i] = (float) random.nextGaussian() / 16;
+            }
+            rows.add(new Row(id, vector));
+        }
+    }
+
+    @Test
+    void comparesTextBatchWithBinaryCopy() {
+        // warm-up: the second pass exercises the update branch of the upsert
+        measure("text batch", this::writeText);
+        measure("binary copy", this::writeCopy);
+        jdbcTemplate.execute("TRUNCATE dm.chunks_vectors");
+
+        Result text = measure("text batch", this::writeText);
+        jdbcTemplate.execute("TRUNCATE dm.chunks_vectors");
+        Result copy = measure("binary copy", this::writeCopy);
+
+        log.info("Vector writes of {} rows in pages of {}", ROWS, PAGE);
+        log.info("  text batch:  {} ms, {} bytes allocated", text.millis(), text.allocatedBytes());
+        log.info("  binary copy: {} ms, {} bytes allocated", copy.millis(), copy.allocatedBytes());
+
+        assertEquals(ROWS, jdbcTemplate.queryForObject("SELECT count(*) FROM dm.chunks_vectors", Integer.class));
+        Row sample = rows.get(ROWS / 2);
+        String stored = jdbcTemplate.queryForObject(
+                "SELECT embedding::text FROM dm.chunks_vectors WHERE chunk_id = ?", String.class, sample.id());
+        assertArrayEquals(sample.vector(), EmbeddingService.parseVector(stored));
+    }
+
+    private void writeText(List<Row> page) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO dm.chunks_vectors(chunk_id, embedding) VALUES (?, ?::vector) " +
+                        "ON CONFLICT (chunk_id) DO UPDATE SET embedding = EXCLUDED.embedding",
+                page, page.size(), (ps, row) -> {
+                    ps.setLong(1, row.id());
+                    ps.setString(2, EmbeddingService.vectorToString(row.vector()));
+                });
+    }
+
+    private void writeCopy(List<Row> page) {
+        copyWriter.upsert(page, Row::id, Row::vector);
+    }
+
+    private Result measure(String name, PageWriter writer) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int from = 0; from < ROWS; from += PAGE) {
+            writer.write(rows.subList(from, Math.min(ROWS, from + PAGE)));
+        }
+        return new Result(name, (System.nanoTime() - start) / 1_000_000,
+                threads.getCurrentThreadAllocatedBytes() - allocatedBefore);
+    }
+
+    private interface PageWriter {
+        void write(List<Row> page);
+    }
+
+    private record Row(long id, float[] vector) {
+    }
+
+    private record Result(String name, long millis, long allocatedBytes) {
+    }
+}
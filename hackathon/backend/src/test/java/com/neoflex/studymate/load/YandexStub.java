@@ -0,0 +1,171 @@
+package com.neoflex.studymate.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the Yandex Foundation Models API: classification, tag and answer completions (optionally streamed)
+ * and deterministic 256-dimension embeddings in which texts sharing words are close.
+ */
+class YandexStub implements AutoCloseable {
+
+    static final int DIMENSION = 256;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final LatencyProfile completionLatency;
+    private final LatencyProfile embeddingLatency;
+    private final double errorRate;
+    private final int streamParts;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    YandexStub(LatencyProfile completionLatency, LatencyProfile embeddingLatency, double errorRate, int streamParts)
+            throws IOException {
+        this.completionLatency = completionLatency;
+        this.embeddingLatency = embeddingLatency;
+        this.errorRate = errorRate;
+        this.streamParts = streamParts;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/foundationModels/v1/completion", this::completion);
+        server.createContext("/foundationModels/v1/textEmbedding", this::embedding);
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    long requests() {
+        return requests.get();
+    }
+
+    long errors() {
+        return errors.get();
+    }
+
+    private void completion(HttpExchange exchange) throws IOException {
+        JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+        if (failed(exchange)) {
+            return;
+        }
+        String prompt = request.path("messages").path(1).path("text").asText();
+        String text = completionText(prompt);
+
+        if (!request.path("completionOptions").path("stream").asBoolean()) {
+            completionLatency.sleep();
+            respond(exchange, 200, alternative(text));
+            return;
+        }
+
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream body = exchange.getResponseBody()) {
+            for (int part = 1; part <= streamParts; part++) {
+                sleepMillis(completionLatency.sampleMillis() / streamParts);
+                String partial = text.substring(0, text.length() * part / streamParts);
+                body.write((objectMapper.writeValueAsString(alternative(partial)) + "\n").getBytes(StandardCharsets.UTF_8));
+                body.flush();
+            }
+        }
+    }
+
+    private void embedding(HttpExchange exchange) throws IOException {
+        JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+        if (failed(exchange)) {
+            return;
+        }
+        embeddingLatency.sleep();
+        respond(exchange, 200, Map.of("embedding", embed(request.path("text").asText()), "numTokens", "1", "modelVersion", "stub"));
+    }
+
+    private boolean failed(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        if (ThreadLocalRandom.current().nextDouble() >= errorRate) {
+            return false;
+        }
+        errors.incrementAndGet();
+        respond(exchange, 503, Map.of("error", Map.of("message", "stub overloaded")));
+        return true;
+    }
+
+    private static String completionText(String prompt) {
+        if (prompt.contains("\"isStudy\"")) {
+            List<String> tags = words(afterLast(prompt, "Вопрос:")).stream().limit(3).toList();
+            return "{\"isStudy\": true, \"isLocationLookup\": false, \"tags\": [" +
+                    String.join(", ", tags.stream().map(tag -> "\"" + tag + "\"").toList()) + "]}";
+        }
+        if (prompt.startsWith("Выдели ключевые слова")) {
+            return String.join(" ", words(prompt.substring(prompt.indexOf('"') + 1)).stream().limit(5).toList());
+        }
+        if (prompt.contains("Ответь только '1' или '0'")) {
+            return "1";
+        }
+        return "По материалам курса: это понятие описано в разделах ниже. " +
+                "Ключевая идея состоит в том, чтобы сократить объём перебираемых данных и опираться на структуру хранения.";
+    }
+
+    static float[] embed(String text) {
+        float[] vector = new float[DIMENSION];
+        for (String word : words(text)) {
+            SplittableRandom random = new SplittableRandom(word.hashCode());
+            for (int i = 0; i < DIMENSION; i++) {
+                vector[i] += (float) random.nextGaussian();
+            }
+        }
+        return vector;
+    }
+
+    static List<String> words(String text) {
+        return Arrays.stream(text.toLowerCase().split("[^\\p{IsAlphabetic}]+"))
+                .filter(word -> word.length() > 3)
+                .distinct()
+                .toList();
+    }
+
+    private static String afterLast(String text, String marker) {
+        int index = text.lastIndexOf(marker);
+        return index < 0 ? text : text.substring(index + marker.length());
+    }
+
+    private static Map<String, Object> alternative(String text) {
+        return Map.of("result", Map.of("alternatives", List.of(Map.of("message", Map.of("role", "assistant", "text", text)))));
+    }
+
+    private void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sleepMillis(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,67 @@
+package com.neoflex.studymate.services.bot;
+
+import com.neoflex.studymate.dto.ChunkCard;
+import com.neoflex.studymate.dto.QueryAnalysis;
+import com.neoflex.studymate.services.search.ExternalSearchService;
+import com.neoflex.studymate.services.search.HybridSearchService;
+import com.neoflex.studymate.services.search.VectorDbService;
+import com.neoflex.studymate.services.yandex.UpstreamUnavailableException;
+import com.neoflex.studymate.services.yandex.YandexGptService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BotServiceTest {
+
+    private final VectorDbService vectorDbService = mock(VectorDbService.class);
+    private final ExternalSearchService externalSearchService = mock(ExternalSearchService.class);
+    private final YandexGptService yandexGptService = mock(YandexGptService.class);
+    private final TelegramService telegramService = mock(TelegramService.class);
+    private final HybridSearchService hybridSearchService = mock(HybridSearchService.class);
+    private final SemanticAnswerCache semanticAnswerCache = mock(SemanticAnswerCache.class);
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final BotService botService = new BotService(vectorDbService, externalSearchService, yandexGptService,
+            telegramService, hybridSearchService, semanticAnswerCache, executor, new SimpleMeterRegistry(),
+            ObservationRegistry.NOOP);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void failedQueryEmbeddingFallsBackToFullTextAndTagRetrieval() {
+        ReflectionTestUtils.setField(botService, "streamingEnabled", false);
+        String query = "Что такое B-дерево?";
+        List<String> tags = List.of("структуры данных");
+        ChunkCard card = new ChunkCard(1L, "B-деревья", "https://materials/1", "Лекция 3", "Алгоритмы", "Текст");
+        when(yandexGptService.analyzeQuery(query)).thenReturn(new QueryAnalysis(true, false, tags));
+        when(vectorDbService.embedQuery(query)).thenThrow(new UpstreamUnavailableException("circuit breaker is open"));
+        when(externalSearchService.search(query)).thenReturn(List.of());
+        when(hybridSearchService.findRelevantChunks(eq(query), isNull(), eq(tags))).thenReturn(List.of(card));
+        when(yandexGptService.answerCompleteAnswer(query, List.of(card))).thenReturn("Сбалансированное дерево поиска");
+
+        botService.handleUserMessage(42L, query);
+
+        verify(telegramService).sendMessage(eq(42L), contains("Сбалансированное дерево поиска"),
+                eq(TelegramDeliveryQueue.Priority.NORMAL));
+        verify(semanticAnswerCache, never()).lookup(any(), anyBoolean());
+        verify(semanticAnswerCache, never()).put(any(), anyBoolean(), any(), any());
+    }
+}
@@ -0,0 +1,43 @@
+package com.neoflex.studymate.services.bot;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MarkdownV2Test {
+
+    @Test
+    void escapesAllSpecialCharacters() {
+        assertEquals("\\[ссылка\\]\\(https://a\\.b\\) \\- 1\\+1\\=2\\! \\\\", MarkdownV2.escape("[ссылка](https://a.b) - 1+1=2! \\"));
+    }
+
+    @Test
+    void longTextIsSplitAtParagraphsWithinTheEscapedLimit() {
+        String paragraph = "Индекс ускоряет поиск. ".repeat(10).strip();
+        String text = String.join("\n\n", Collections.nCopies(30, paragraph));
+
+        List<String> parts = MarkdownV2.split(text, 1000);
+
+        assertTrue(parts.size() > 1);
+        for (String part : parts) {
+            assertTrue(part.length() <= 1000, "part of " + part.length() + " characters");
+            assertTrue(part.endsWith("поиск\\."));
+            assertFalse(part.startsWith("\n"));
+        }
+        assertTrue(MarkdownV2.escape(text).equals(String.join("\n\n", parts)));
+    }
+
+    @Test
+    void textWithoutSeparatorsIsCutWithoutBreakingEscapes() {
+        String text = ".".repeat(25);
+
+        List<String> parts = MarkdownV2.split(text, 10);
+
+        assertEquals(List.of("\\.".repeat(5), "\\.".repeat(5), "\\.".repeat(5), "\\.".repeat(5), "\\.".repeat(5)), parts);
+    }
+}
@@ -0,0 +1,194 @@
+package com.neoflex.studymate.services.bot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TelegramDeliveryQueueTest {
+
+    private final RestTemplate restTemplate = mock(RestTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<Sent> sent = new CopyOnWriteArrayList<>();
+    /** Released to let the first request finish; requests after the first never block. */
+    private final CountDownLatch releaseFirst = new CountDownLatch(1);
+    private final CountDownLatch firstStarted = new CountDownLatch(1);
+    private TelegramDeliveryQueue queue;
+
+    private record Sent(Object chatId, Object text, long at) {
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        releaseFirst.countDown();
+        if (queue != null) {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    void requestsToOneChatArePacedWithoutDelayingOtherChats() throws Exception {
+        recordSends(false);
+        queue = queue(Duration.ofMillis(200), 100, 0, Duration.ofSeconds(1));
+
+        CompletableFuture<?> last = null;
+        for (int i = 0; i < 3; i++) {
+            last = queue.submit(1L, "sendMessage", request(1L, "a" + i), TelegramDeliveryQueue.Priority.NORMAL);
+        }
+        CompletableFuture<?> other = queue.submit(2L, "sendMessage", request(2L, "b"), TelegramDeliveryQueue.Priority.NORMAL);
+        CompletableFuture.allOf(last, other).get(5, TimeUnit.SECONDS);
+
+        List<Sent> chat1 = sent.stream().filter(s -> s.chatId().equals(1L)).toList();
+        assertEquals(List.of("a0", "a1", "a2"), chat1.stream().map(Sent::text).toList());
+        for (int i = 1; i < chat1.size(); i++) {
+            long gap = TimeUnit.NANOSECONDS.toMillis(chat1.get(i).at() - chat1.get(i - 1).at());
+            assertTrue(gap >= 190, "requests to one chat were " + gap + " ms apart");
+        }
+        Sent chat2 = sent.stream().filter(s -> s.chatId().equals(2L)).findFirst().orElseThrow();
+        assertTrue(chat2.at() < chat1.get(1).at(), "the second chat waited for the first chat's interval");
+    }
+
+    @Test
+    void urgentDeliveriesOvertakeQueuedNormalOnes() throws Exception {
+        recordSends(true);
+        queue = queue(Duration.ofMillis(10), 100, 0, Duration.ofSeconds(1));
+
+        queue.submit(1L, "sendMessage", request(1L, "first"), TelegramDeliveryQueue.Priority.NORMAL);
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+        queue.submit(1L, "sendMessage", request(1L, "A"), TelegramDeliveryQueue.Priority.NORMAL);
+        CompletableFuture<?> last = queue.submit(1L, "sendMessage", request(1L, "B"), TelegramDeliveryQueue.Priority.NORMAL);
+        queue.submit(1L, "sendMessage", request(1L, "C"), TelegramDeliveryQueue.Priority.URGENT);
+        releaseFirst.countDown();
+        last.get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("first", "C", "A", "B"), sent.stream().map(Sent::text).toList());
+    }
+
+    @Test
+    void rateLimitedRequestsAreRetriedAfterRetryAfter() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        when(restTemplate.postForObject(anyString(), any(), any())).thenAnswer(invocation -> {
+            if (calls.getAndIncrement() == 0) {
+                throw HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", HttpHeaders.EMPTY,
+                        "{\"ok\":false,\"parameters\":{\"retry_after\":1}}".getBytes(StandardCharsets.UTF_8),
+                        StandardCharsets.UTF_8);
+            }
+            return Map.of("ok", true, "result", Map.of("message_id", 7));
+        });
+        queue = queue(Duration.ofMillis(10), 100, 0, Duration.ofSeconds(1));
+
+        long start = System.nanoTime();
+        Map<String, Object> result = queue.submit(1L, "sendMessage", request(1L, "x"), TelegramDeliveryQueue.Priority.NORMAL)
+                .get(5, TimeUnit.SECONDS);
+
+        assertEquals(7, result.get("message_id"));
+        assertEquals(2, calls.get());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 1000);
+        assertEquals(1.0, meterRegistry.counter("telegram.delivery.retries").count());
+    }
+
+    @Test
+    void queuedEditsOfOneMessageAreCoalesced() throws Exception {
+        recordSends(true);
+        queue = queue(Duration.ofMillis(10), 100, 0, Duration.ofSeconds(1));
+
+        queue.submit(1L, "sendMessage", request(1L, "first"), TelegramDeliveryQueue.Priority.NORMAL);
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+        CompletableFuture<?> edit1 = queue.submitLatest(1L, "edit:5", "editMessageText", request(1L, "v1"),
+                TelegramDeliveryQueue.Priority.NORMAL);
+        CompletableFuture<?> edit2 = queue.submitLatest(1L, "edit:5", "editMessageText", request(1L, "v2"),
+                TelegramDeliveryQueue.Priority.NORMAL);
+        CompletableFuture<?> edit3 = queue.submitLatest(1L, "edit:5", "editMessageText", request(1L, "v3"),
+                TelegramDeliveryQueue.Priority.NORMAL);
+        assertEquals(1, queue.size());
+        releaseFirst.countDown();
+        edit3.get(5, TimeUnit.SECONDS);
+
+        assertSame(edit1, edit2);
+        assertSame(edit2, edit3);
+        assertEquals(List.of("first", "v3"), sent.stream().map(Sent::text).toList());
+        assertEquals(2.0, meterRegistry.counter("telegram.delivery.coalesced").count());
+    }
+
+    @Test
+    void urgentDeliveriesAreCappedByTheReserve() throws Exception {
+        recordSends(true);
+        queue = queue(Duration.ofMillis(10), 1, 1, Duration.ofSeconds(1));
+
+        queue.submit(1L, "sendMessage", request(1L, "first"), TelegramDeliveryQueue.Priority.NORMAL);
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+        CompletableFuture<?> normal = queue.submit(1L, "sendMessage", request(1L, "n1"), TelegramDeliveryQueue.Priority.NORMAL);
+        CompletableFuture<?> normalOverflow = queue.submit(1L, "sendMessage", request(1L, "n2"), TelegramDeliveryQueue.Priority.NORMAL);
+        CompletableFuture<?> urgent = queue.submit(1L, "sendMessage", request(1L, "u1"), TelegramDeliveryQueue.Priority.URGENT);
+        CompletableFuture<?> urgentOverflow = queue.submit(1L, "sendMessage", request(1L, "u2"), TelegramDeliveryQueue.Priority.URGENT);
+
+        assertTrue(normalOverflow.isCompletedExceptionally());
+        assertTrue(urgentOverflow.isCompletedExceptionally());
+        releaseFirst.countDown();
+        CompletableFuture.allOf(normal, urgent).get(5, TimeUnit.SECONDS);
+        assertEquals(2.0, meterRegistry.counter("telegram.delivery.dropped").count());
+    }
+
+    @Test
+    void shutdownFailsUndeliveredRequests() throws Exception {
+        recordSends(true);
+        queue = queue(Duration.ofMillis(10), 100, 0, Duration.ofMillis(200));
+
+        queue.submit(1L, "sendMessage", request(1L, "first"), TelegramDeliveryQueue.Priority.NORMAL);
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+        CompletableFuture<?> pending = queue.submit(1L, "sendMessage", request(1L, "second"),
+                TelegramDeliveryQueue.Priority.NORMAL);
+        queue.shutdown();
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> pending.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+        assertTrue(queue.submit(1L, "sendMessage", request(1L, "late"), TelegramDeliveryQueue.Priority.URGENT)
+                .isCompletedExceptionally());
+    }
+
+    private void recordSends(boolean blockFirst) {
+        when(restTemplate.postForObject(anyString(), any(), any())).thenAnswer(invocation -> {
+            Map<?, ?> request = invocation.getArgument(1);
+            sent.add(new Sent(request.get("chat_id"), request.get("text"), System.nanoTime()));
+            if (blockFirst && firstStarted.getCount() > 0) {
+                firstStarted.countDown();
+                releaseFirst.await();
+            }
+            return Map.of("ok", true, "result", Map.of());
+        });
+    }
+
+    private TelegramDeliveryQueue queue(Duration perChatInterval, int capacity, int urgentReserve, Duration shutdownTimeout) {
+        return new TelegramDeliveryQueue(restTemplate, new ObjectMapper(), meterRegistry, "http://telegram.test", "token",
+                1000, perChatInterval, capacity, urgentReserve, 5, shutdownTimeout);
+    }
+
+    private static Map<String, Object> request(Long chatId, String text) {
+        return Map.of("chat_id", chatId, "text", text);
+    }
+}
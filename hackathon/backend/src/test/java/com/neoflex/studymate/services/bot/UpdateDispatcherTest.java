@@ -0,0 +1,22 @@
+package com.neoflex.studymate.services.bot;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class UpdateDispatcherTest {
+
+    @Test
+    void rejectedUpdatesReleaseTheirPendingSlot() throws InterruptedException {
+        UpdateDispatcher dispatcher = new UpdateDispatcher(mock(TelegramService.class), 2, 100);
+        dispatcher.shutdown();
+
+        for (long updateId = 1; updateId <= 5; updateId++) {
+            dispatcher.dispatch(updateId, 1L, () -> {
+            });
+        }
+
+        assertEquals(0, dispatcher.pendingCount());
+    }
+}
@@ -0,0 +1,235 @@
+package com.neoflex.studymate.services.chunk;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neoflex.studymate.services.search.HnswChunkRetriever;
+import com.neoflex.studymate.services.search.TagIndex;
+import com.neoflex.studymate.services.yandex.YandexGptService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BulkIngestionPipelineTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final ChunkService chunkService = mock(ChunkService.class);
+    private final YandexGptService yandexGptService = mock(YandexGptService.class);
+    private final VectorCopyWriter vectorCopyWriter = mock(VectorCopyWriter.class);
+    private final HnswChunkRetriever hnswChunkRetriever = mock(HnswChunkRetriever.class);
+    private final TagIndex tagIndex = mock(TagIndex.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong sequence = new AtomicLong();
+    private BulkIngestionPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any())).thenAnswer(invocation -> {
+            int count = invocation.getArgument(2);
+            return LongStream.range(0, count).map(i -> sequence.incrementAndGet()).boxed().toList();
+        });
+        when(yandexGptService.extractTags(anyString())).thenReturn(List.of("java"));
+        when(yandexGptService.embedDocument(anyString())).thenReturn(new float[]{1, 0, 0});
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void reportsFinalCountsAndIndexesTagsPerBatch() throws Exception {
+        pipeline = pipeline(100);
+
+        ImportJob job = pipeline.importChunks(ndjson(validLines(10)), 1L);
+        ImportJob.Progress progress = awaitCompleted(job);
+
+        assertEquals(10, progress.received());
+        assertEquals(0, progress.rejected());
+        assertEquals(10, progress.inserted());
+        assertEquals(10, progress.tagged());
+        assertEquals(10, progress.embedded());
+        assertEquals(10, progress.indexed());
+        assertEquals(0, progress.failed());
+        verify(hnswChunkRetriever, times(10)).upsert(anyLong(), any());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<Long, ? extends Collection<String>>> batches = ArgumentCaptor.forClass(Map.class);
+        verify(tagIndex, atLeastOnce()).addTags(batches.capture());
+        assertEquals(10, batches.getAllValues().stream().mapToInt(Map::size).sum());
+        verify(tagIndex, never()).addTags(anyLong(), any());
+    }
+
+    @Test
+    void rejectsInvalidLinesWithTheirLineNumbers() throws Exception {
+        pipeline = pipeline(100);
+        String body = String.join("\n",
+                line(1),
+                "not json",
+                "{\"title\":\"\",\"content\":\"text\"}",
+                "",
+                line(2));
+
+        ImportJob.Progress progress = awaitCompleted(pipeline.importChunks(ndjson(body), 1L));
+
+        assertEquals(4, progress.received());
+        assertEquals(2, progress.rejected());
+        assertEquals(2, progress.indexed());
+        assertEquals(List.of("line 2: invalid JSON", "line 3: title and content are required"), progress.errors());
+    }
+
+    @Test
+    void slowStagePushesBackOnTheReaderNotOnTheUpload() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(yandexGptService.extractTags(anyString())).thenAnswer(invocation -> {
+            release.await();
+            return List.of("java");
+        });
+        pipeline = pipeline(2);
+
+        // returns once the upload is spooled, although the tag stage cannot take a single chunk yet
+        ImportJob job = pipeline.importChunks(ndjson(validLines(50)), 1L);
+        Thread.sleep(300);
+
+        ImportJob.Progress blocked = job.progress();
+        assertEquals(ImportJob.State.RECEIVING, blocked.state());
+        assertTrue(blocked.received() <= 10, "reader ran ahead of the blocked stage: " + blocked.received());
+        assertTrue(meterRegistry.get("ingestion.bulk.queue.depth").tag("stage", "tag").gauge().value() <= 2);
+
+        release.countDown();
+        ImportJob.Progress progress = awaitCompleted(job);
+        assertEquals(50, progress.received());
+        assertEquals(50, progress.indexed());
+    }
+
+    @Test
+    void failedCopyFallsBackToRowByRowWrites() throws Exception {
+        when(vectorCopyWriter.upsert(anyList(), any(), any())).thenThrow(new IllegalStateException("COPY failed"));
+        pipeline = pipeline(100);
+
+        ImportJob.Progress progress = awaitCompleted(pipeline.importChunks(ndjson(validLines(3)), 1L));
+
+        assertEquals(3, progress.embedded());
+        assertEquals(0, progress.failed());
+        verify(jdbcTemplate, times(3)).update(eq(EmbeddingService.UPSERT_EMBEDDING_SQL), anyLong(), anyString());
+        verify(hnswChunkRetriever, times(3)).upsert(anyLong(), any());
+    }
+
+    @Test
+    void refusesUploadsLargerThanTheLimit() {
+        pipeline = pipeline(100, DataSize.ofBytes(100));
+
+        ImportRejectedException error = assertThrows(ImportRejectedException.class,
+                () -> pipeline.importChunks(ndjson(validLines(10)), 1L));
+
+        assertEquals(ImportRejectedException.Reason.TOO_LARGE, error.reason());
+        verify(jdbcTemplate, never()).queryForList(anyString(), eq(Long.class), any());
+    }
+
+    @Test
+    void refusesUploadsWithoutAnyFileId() {
+        pipeline = pipeline(100);
+
+        ImportRejectedException error = assertThrows(ImportRejectedException.class,
+                () -> pipeline.importChunks(ndjson(validLines(3)), null));
+
+        assertEquals(ImportRejectedException.Reason.NO_FILE_ID, error.reason());
+    }
+
+    @Test
+    void rejectsLinesThatDoNotFitTheChunksTable() throws Exception {
+        pipeline = pipeline(100);
+        String body = String.join("\n",
+                "{\"title\":\"Раздел 1\",\"content\":\"Текст\",\"fileId\":7}",
+                line(2),
+                "{\"title\":\"" + "x".repeat(256) + "\",\"content\":\"Текст\",\"fileId\":7}");
+
+        ImportJob.Progress progress = awaitCompleted(pipeline.importChunks(ndjson(body), null));
+
+        assertEquals(3, progress.received());
+        assertEquals(2, progress.rejected());
+        assertEquals(1, progress.indexed());
+        assertEquals(List.of("line 2: fileId is required",
+                "line 3: title and url must not be longer than 255 characters"), progress.errors());
+    }
+
+    @Test
+    void batchFailingInAStageStillCompletesTheJob() throws Exception {
+        @SuppressWarnings("unchecked")
+        List<String> brokenTags = mock(List.class);
+        when(brokenTags.isEmpty()).thenThrow(new IllegalStateException("broken tags"));
+        when(yandexGptService.extractTags(anyString())).thenReturn(brokenTags);
+        pipeline = pipeline(100);
+
+        ImportJob.Progress progress = awaitCompleted(pipeline.importChunks(ndjson(validLines(3)), 1L));
+
+        assertEquals(3, progress.inserted());
+        assertEquals(0, progress.indexed());
+        assertTrue(progress.errors().contains("index stage failed: broken tags"), progress.errors().toString());
+    }
+
+    private BulkIngestionPipeline pipeline(int queueCapacity) {
+        return pipeline(queueCapacity, DataSize.ofMegabytes(1));
+    }
+
+    private BulkIngestionPipeline pipeline(int queueCapacity, DataSize maxUploadSize) {
+        BulkIngestionPipeline pipeline = new BulkIngestionPipeline(jdbcTemplate, new ObjectMapper(), chunkService,
+                yandexGptService, vectorCopyWriter, hnswChunkRetriever, tagIndex, meterRegistry,
+                queueCapacity, 2, 1, 1, 2, Duration.ofMinutes(1), maxUploadSize);
+        pipeline.start();
+        return pipeline;
+    }
+
+    private static ImportJob.Progress awaitCompleted(ImportJob job) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (job.progress().state() != ImportJob.State.COMPLETED && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(ImportJob.State.COMPLETED, job.progress().state());
+        return job.progress();
+    }
+
+    private static String validLines(int count) {
+        return IntStream.rangeClosed(1, count).mapToObj(BulkIngestionPipelineTest::line).collect(Collectors.joining("\n"));
+    }
+
+    private static String line(int number) {
+        return "{\"title\":\"Раздел " + number + "\",\"content\":\"Текст раздела " + number + "\"}";
+    }
+
+    private static ByteArrayInputStream ndjson(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,32 @@
+package com.neoflex.studymate.services.chunk;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class ImportJobTest {
+
+    @Test
+    void completesWhenEveryAcceptedChunkLeftThePipeline() {
+        ImportJob job = new ImportJob("test");
+        for (int i = 0; i < 4; i++) {
+            job.received();
+        }
+        job.rejected(3, "invalid JSON");
+        job.indexed(2);
+        assertEquals(ImportJob.State.RECEIVING, job.progress().state());
+
+        job.receivingFinished();
+        assertEquals(ImportJob.State.PROCESSING, job.progress().state());
+
+        job.failed(1, "insert failed");
+        job.dropped(1);
+        ImportJob.Progress progress = job.progress();
+        assertEquals(ImportJob.State.COMPLETED, progress.state());
+        assertEquals(1, progress.rejected());
+        assertEquals(1, progress.failed());
+        assertEquals(2, progress.errors().size());
+        assertNotNull(progress.finishedAt());
+    }
+}
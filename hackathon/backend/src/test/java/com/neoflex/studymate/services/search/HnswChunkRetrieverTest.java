@@ -0,0 +1,116 @@
+package com.neoflex.studymate.services.search;
+
+import com.neoflex.studymate.services.chunk.EmbeddingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HnswChunkRetrieverTest {
+
+    private static final int DIMENSION = 256;
+
+    /** Stands in for {@code dm.chunks_vectors}: writers store a vector first, then update the index, like the services do. */
+    private final Map<Long, float[]> table = new ConcurrentHashMap<>();
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final HnswChunkRetriever retriever = new HnswChunkRetriever(jdbcTemplate);
+
+    @Test
+    void writesDuringRebuildsReachTheLiveIndex() throws Exception {
+        configure();
+        Random random = new Random(5);
+        for (long id = 0; id < 200; id++) {
+            table.put(id, randomVector(random));
+        }
+        rebuild();
+
+        List<Long> removed = new ArrayList<>();
+        Thread writer = Thread.ofVirtual().start(() -> {
+            Random writes = new Random(7);
+            for (long id = 1000; id < 1150; id++) {
+                float[] vector = randomVector(writes);
+                table.put(id, vector);
+                retriever.upsert(id, vector);
+                // every fifth write deletes an old chunk, too few to trigger a rebuild for fragmentation
+                long victim = (id - 1000) / 5;
+                if (id % 5 == 0 && table.remove(victim) != null) {
+                    retriever.remove(victim);
+                    synchronized (removed) {
+                        removed.add(victim);
+                    }
+                }
+            }
+        });
+        for (int i = 0; i < 5; i++) {
+            rebuild();
+        }
+        writer.join();
+
+        for (Map.Entry<Long, float[]> row : table.entrySet()) {
+            assertEquals(List.of(row.getKey()), ids(retriever.findNearest(row.getValue(), List.of(row.getKey()), 1)),
+                    "chunk " + row.getKey() + " is missing from the live index");
+        }
+        assertTrue(!removed.isEmpty());
+        for (long id : removed) {
+            assertTrue(retriever.findNearest(randomVector(random), List.of(id), 1).isEmpty(),
+                    "removed chunk " + id + " is still served");
+        }
+    }
+
+    private void configure() throws Exception {
+        ReflectionTestUtils.setField(retriever, "enabled", true);
+        ReflectionTestUtils.setField(retriever, "m", 16);
+        ReflectionTestUtils.setField(retriever, "efConstruction", 64);
+        ReflectionTestUtils.setField(retriever, "efSearch", 64);
+        ReflectionTestUtils.setField(retriever, "quantization", "none");
+        ReflectionTestUtils.setField(retriever, "exactScanThreshold", 2000);
+        ReflectionTestUtils.setField(retriever, "recallCheckSamples", 0);
+
+        // the scan reads a snapshot of the table, as a query in its own transaction would
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            ResultSet rs = mock(ResultSet.class);
+            long[] currentId = new long[1];
+            float[][] currentVector = new float[1][];
+            when(rs.getLong("chunk_id")).thenAnswer(call -> currentId[0]);
+            when(rs.getString("embedding")).thenAnswer(call -> EmbeddingService.vectorToString(currentVector[0]));
+            for (Map.Entry<Long, float[]> row : Map.copyOf(table).entrySet()) {
+                currentId[0] = row.getKey();
+                currentVector[0] = row.getValue();
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+    }
+
+    private void rebuild() {
+        ReflectionTestUtils.invokeMethod(retriever, "rebuild");
+    }
+
+    private static List<Long> ids(List<ScoredChunk> chunks) {
+        return chunks.stream().map(ScoredChunk::chunkId).toList();
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,98 @@
+package com.neoflex.studymate.services.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HnswIndexTest {
+
+    private static final int DIMENSION = 64;
+
+    @Test
+    void recallAgainstBruteForce() {
+        HnswIndex index = new HnswIndex(DIMENSION, 16, 100, 64);
+        Random random = new Random(1);
+        for (long id = 0; id < 3000; id++) {
+            index.add(id, clusteredVector(random));
+        }
+
+        double recall = index.measureRecall(200, 10);
+
+        assertTrue(recall >= 0.9, "recall@10 was " + recall);
+    }
+
+    @Test
+    void quantizedIndexKeepsRecallAgainstFloatBruteForce() {
+        HnswIndex exact = new HnswIndex(DIMENSION, 16, 100, 64);
+        HnswIndex quantized = new HnswIndex(DIMENSION, 16, 100, 64, true);
+        Random random = new Random(4);
+        for (long id = 0; id < 3000; id++) {
+            float[] vector = clusteredVector(random);
+            exact.add(id, vector);
+            quantized.add(id, vector);
+        }
+
+        double total = 0;
+        for (int i = 0; i < 100; i++) {
+            float[] query = clusteredVector(random);
+            List<Long> expected = exact.bruteForce(query, 10).stream().map(ScoredChunk::chunkId).toList();
+            total += quantized.search(query, 10, id -> true).stream()
+                    .filter(c -> expected.contains(c.chunkId()))
+                    .count() / 10.0;
+        }
+
+        assertTrue(total / 100 >= 0.85, "int8 recall@10 was " + total / 100);
+        assertEquals(DIMENSION + Float.BYTES, quantized.bytesPerVector());
+    }
+
+    @Test
+    void removedAndReplacedChunksAreNotReturnedTwice() {
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 50, 32);
+        Random random = new Random(2);
+        for (long id = 0; id < 500; id++) {
+            index.add(id, clusteredVector(random));
+        }
+        float[] query = clusteredVector(random);
+        long nearest = index.search(query, 1, id -> true).get(0).chunkId();
+
+        index.remove(nearest);
+        index.add(nearest == 7 ? 8 : 7, clusteredVector(random));
+
+        List<ScoredChunk> found = index.search(query, 50, id -> true);
+        assertFalse(found.stream().anyMatch(c -> c.chunkId() == nearest));
+        assertEquals(found.size(), found.stream().map(ScoredChunk::chunkId).distinct().count());
+        assertEquals(499, index.size());
+    }
+
+    @Test
+    void filteredSearchMatchesExactScan() {
+        HnswIndex index = new HnswIndex(DIMENSION, 16, 100, 64);
+        Random random = new Random(3);
+        for (long id = 0; id < 1000; id++) {
+            index.add(id, clusteredVector(random));
+        }
+        Set<Long> allowed = Set.of(3L, 30L, 300L, 301L, 302L, 999L);
+        float[] query = clusteredVector(random);
+
+        List<ScoredChunk> exact = index.exactSearch(query, 3, allowed);
+        List<ScoredChunk> filtered = index.search(query, 3, allowed::contains);
+
+        assertEquals(exact.stream().map(ScoredChunk::chunkId).toList(),
+                filtered.stream().map(ScoredChunk::chunkId).toList());
+    }
+
+    private static float[] clusteredVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        int cluster = random.nextInt(20);
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) ((i % 20 == cluster ? 3 : 0) + random.nextGaussian());
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,55 @@
+package com.neoflex.studymate.services.search;
+
+import com.neoflex.studymate.services.chunk.ChunkCardCache;
+import com.neoflex.studymate.services.chunk.ChunkService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HybridSearchServiceTest {
+
+    @Test
+    void anyWordQueryQuotesWordsAndDropsOperators() {
+        assertEquals("'Что' | 'такое' | 'B' | 'дерево'", HybridSearchService.anyWordQuery("Что такое B-дерево?"));
+        assertEquals("'a' | 'b' | 'c' | 'd'", HybridSearchService.anyWordQuery("a <-> b & !c | 'd'"));
+        assertEquals("", HybridSearchService.anyWordQuery(" <-> ?! "));
+    }
+
+    @Test
+    void fuseRanksItemsFoundBySeveralSourcesFirst() {
+        List<Long> fused = HybridSearchService.fuse(List.of(List.of(1L, 2L, 3L), List.of(3L, 4L), List.of(3L, 2L)), 60, 3);
+
+        assertEquals(List.of(3L, 2L, 1L), fused);
+    }
+
+    @Test
+    void searchWithoutEmbeddingFusesFullTextAndTagRankings() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        ChunkCardCache chunkCardCache = mock(ChunkCardCache.class);
+        VectorDbService vectorDbService = mock(VectorDbService.class);
+        TagIndex tagIndex = mock(TagIndex.class);
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), anyString(), anyInt())).thenReturn(List.of(1L, 2L));
+        when(tagIndex.isAvailable()).thenReturn(true);
+        when(tagIndex.rank(List.of("деревья"), 50)).thenReturn(List.of(2L, 3L));
+        HybridSearchService service = new HybridSearchService(jdbcTemplate, chunkCardCache, mock(ChunkService.class),
+                vectorDbService, tagIndex, new SimpleMeterRegistry(), true, 50, 60, 1);
+
+        HybridSearchService.SearchResult result = service.search("B-дерево", null, List.of("деревья"));
+
+        assertEquals(3, result.candidateCount());
+        verify(chunkCardCache).getAll(List.of(2L, 1L, 3L));
+        verify(vectorDbService, never()).findNearest(any(), any(), anyInt());
+    }
+}
@@ -0,0 +1,90 @@
+package com.neoflex.studymate.services.search;
+
+import com.neoflex.studymate.services.chunk.EmbeddingService;
+import com.neoflex.studymate.utils.VectorMath;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@Testcontainers(disabledWithoutDocker = true)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class PgVectorChunkRetrieverTest {
+
+    private static final int ROWS = 3000;
+    private static final int DIMENSION = 256;
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(
+            DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+
+    private final List<float[]> vectors = new ArrayList<>();
+    private PgVectorChunkRetriever retriever;
+
+    @BeforeAll
+    void setUp() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(
+                POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword(), true));
+        jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS vector");
+        jdbcTemplate.execute("CREATE SCHEMA IF NOT EXISTS dm");
+        jdbcTemplate.execute("CREATE TABLE dm.chunks_vectors (chunk_id integer PRIMARY KEY, embedding vector(256) NOT NULL)");
+
+        Random random = new Random(3);
+        List<Object[]> rows = new ArrayList<>();
+        for (int id = 0; id < ROWS; id++) {
+            float[] vector = randomVector(random);
+            vectors.add(vector);
+            rows.add(new Object[]{id, EmbeddingService.vectorToString(vector)});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO dm.chunks_vectors(chunk_id, embedding) VALUES (?, ?::vector)", rows);
+        jdbcTemplate.execute("CREATE INDEX ON dm.chunks_vectors USING hnsw (embedding vector_cosine_ops) " +
+                "WITH (m = 16, ef_construction = 64)");
+        jdbcTemplate.execute("ANALYZE dm.chunks_vectors");
+        // make the planner prefer the ANN index whenever the query allows it
+        jdbcTemplate.execute("SET enable_seqscan = off");
+
+        retriever = new PgVectorChunkRetriever(jdbcTemplate);
+    }
+
+    @Test
+    void selectiveCandidateFilterReturnsEveryCandidateInExactOrder() {
+        float[] query = randomVector(new Random(11));
+        // every 300th chunk: almost none of them are among the index's approximate nearest neighbours
+        List<Long> candidates = new ArrayList<>();
+        for (long id = 0; id < ROWS; id += 300) {
+            candidates.add(id);
+        }
+
+        List<ScoredChunk> nearest = retriever.findNearest(query, candidates, 5);
+
+        List<Long> expected = candidates.stream()
+                .sorted(Comparator.comparingDouble((Long id) -> -cosine(query, vectors.get(id.intValue()))))
+                .limit(5)
+                .toList();
+        assertEquals(expected, nearest.stream().map(ScoredChunk::chunkId).toList());
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        return VectorMath.dot(a, b) / Math.sqrt((double) VectorMath.dot(a, a) * VectorMath.dot(b, b));
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,49 @@
+package com.neoflex.studymate.services.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TagIndexTest {
+
+    @Test
+    void candidatesRespectMinimumMatch() {
+        TagIndex index = new TagIndex(null);
+        index.setTags(1, List.of("SQL", "индексы"));
+        index.setTags(2, List.of("sql"));
+        index.setTags(3, List.of("Индексы", "транзакции", "sql"));
+
+        assertEquals(List.of(1L, 2L, 3L), TagIndex.toIds(index.candidates(List.of("sql", "индексы"), 1)));
+        assertEquals(List.of(1L, 3L), TagIndex.toIds(index.candidates(List.of("sql", "индексы"), 2)));
+        assertEquals(List.of(3L), TagIndex.toIds(index.candidates(List.of("sql", "индексы", "транзакции"), 3)));
+        assertEquals(List.of(3L, 1L, 2L), index.rank(List.of("sql", "индексы", "транзакции"), 10));
+    }
+
+    @Test
+    void replacedAndRemovedChunksDropTheirOldTags() {
+        TagIndex index = new TagIndex(null);
+        index.setTags(1, List.of("sql", "индексы"));
+        index.setTags(2, List.of("индексы"));
+
+        index.setTags(1, List.of("транзакции"));
+        index.remove(2);
+
+        assertEquals(List.of(), TagIndex.toIds(index.candidates(List.of("sql", "индексы"), 1)));
+        assertEquals(List.of(1L), TagIndex.toIds(index.candidates(List.of("транзакции"), 1)));
+    }
+
+    @Test
+    void batchUpdatesMatchSingleUpdates() {
+        TagIndex index = new TagIndex(null);
+        index.addTags(Map.of(1L, List.of("sql", "индексы"), 2L, List.of("индексы"), 3L, List.of("sql")));
+
+        index.setTags(Map.of(1L, List.of("транзакции"), 2L, List.of("индексы", "sql"), 3L, List.of()));
+
+        assertEquals(List.of(2L), TagIndex.toIds(index.candidates(List.of("sql"), 1)));
+        assertEquals(List.of(2L), TagIndex.toIds(index.candidates(List.of("индексы"), 1)));
+        assertEquals(List.of(1L), TagIndex.toIds(index.candidates(List.of("транзакции"), 1)));
+    }
+}
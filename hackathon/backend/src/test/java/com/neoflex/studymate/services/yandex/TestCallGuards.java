@@ -0,0 +1,34 @@
+package com.neoflex.studymate.services.yandex;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+/**
+ * Builds a {@link YandexCallGuard} from the {@code app.yandex-client} settings in application.yml.
+ */
+public final class TestCallGuards {
+
+    private TestCallGuards() {
+    }
+
+    public static YandexCallGuard fromApplicationYaml(MeterRegistry meterRegistry, Map<String, Object> overrides) {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.setConversionService(new ApplicationConversionService());
+        try {
+            new YamlPropertySourceLoader().load("application", new ClassPathResource("application.yml"))
+                    .forEach(environment.getPropertySources()::addLast);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        environment.getPropertySources().addFirst(new MapPropertySource("overrides", overrides));
+        return new YandexCallGuard(environment, meterRegistry);
+    }
+}
@@ -0,0 +1,99 @@
+package com.neoflex.studymate.services.yandex;
+
+import com.neoflex.studymate.utils.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class YandexCallGuardTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void circuitOpensAfterUpstreamFailuresAndRejectsWithoutCalling() {
+        YandexCallGuard guard = TestCallGuards.fromApplicationYaml(meterRegistry, Map.of(
+                "app.yandex-client.circuit-breaker.window-size", 4,
+                "app.yandex-client.circuit-breaker.minimum-calls", 4));
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(HttpServerErrorException.class, () -> guard.call(YandexCallGuard.Endpoint.COMPLETION, () -> {
+                calls.incrementAndGet();
+                throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+            }));
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, guard.state(YandexCallGuard.Endpoint.COMPLETION));
+        assertThrows(UpstreamUnavailableException.class,
+                () -> guard.call(YandexCallGuard.Endpoint.COMPLETION, calls::incrementAndGet));
+        assertEquals(4, calls.get());
+        assertEquals(CircuitBreaker.State.CLOSED, guard.state(YandexCallGuard.Endpoint.EMBEDDING));
+        guard.shutdown();
+    }
+
+    @Test
+    void slowPrimaryIsHedgedAndFastBackupWins() {
+        YandexCallGuard guard = TestCallGuards.fromApplicationYaml(meterRegistry, Map.of(
+                "app.yandex-client.hedging.min-samples", 1,
+                "app.yandex-client.hedging.min-delay", "50ms"));
+        guard.call(YandexCallGuard.Endpoint.COMPLETION, () -> "warm-up");
+        AtomicInteger attempts = new AtomicInteger();
+
+        long start = System.nanoTime();
+        String result = guard.callHedged(YandexCallGuard.Endpoint.COMPLETION, () -> {
+            if (attempts.incrementAndGet() == 1) {
+                sleep(3000);
+                return "primary";
+            }
+            return "backup";
+        });
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals("backup", result);
+        assertTrue(elapsedMillis < 1000, "hedged call took " + elapsedMillis + " ms");
+        assertEquals(1.0, meterRegistry.get("yandex.client.hedged").tag("endpoint", "completion").counter().count());
+        guard.shutdown();
+    }
+
+    @Test
+    void hedgesStopWhenTheBudgetIsSpent() {
+        YandexCallGuard guard = TestCallGuards.fromApplicationYaml(meterRegistry, Map.of(
+                "app.yandex-client.hedging.min-samples", 1,
+                "app.yandex-client.hedging.min-delay", "50ms",
+                "app.yandex-client.hedging.max-ratio", 0.0,
+                "app.yandex-client.hedging.max-burst", 1));
+        guard.call(YandexCallGuard.Endpoint.COMPLETION, () -> "warm-up");
+        AtomicInteger attempts = new AtomicInteger();
+
+        // every call is slower than all before it, so each one exceeds the p95
+        for (long delay : new long[]{150, 300, 600}) {
+            guard.callHedged(YandexCallGuard.Endpoint.COMPLETION, () -> {
+                attempts.incrementAndGet();
+                sleep(delay);
+                return "slow";
+            });
+        }
+
+        assertEquals(4, attempts.get());
+        assertEquals(1.0, meterRegistry.get("yandex.client.hedged").tag("endpoint", "completion").counter().count());
+        assertEquals(2.0, meterRegistry.get("yandex.client.hedge.skipped")
+                .tags("endpoint", "completion", "reason", "budget").counter().count());
+        guard.shutdown();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
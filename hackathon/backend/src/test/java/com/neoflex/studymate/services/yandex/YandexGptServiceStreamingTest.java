@@ -0,0 +1,100 @@
+package com.neoflex.studymate.services.yandex;
+
+import com.neoflex.studymate.config.TestHttpClients;
+import com.neoflex.studymate.dto.ChunkCard;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class YandexGptServiceStreamingTest {
+
+    private static final List<String> PARTIALS = List.of("Индекс", "Индекс ускоряет", "Индекс ускоряет поиск.");
+    private static final long CHUNK_DELAY_MS = 200;
+
+    private final TestHttpClients httpClients = new TestHttpClients();
+    private HttpServer server;
+    private YandexGptService service;
+
+    @BeforeEach
+    void startStub() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/foundationModels/v1/completion", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream body = exchange.getResponseBody()) {
+                for (String text : PARTIALS) {
+                    String line = "{\"result\":{\"alternatives\":[{\"message\":{\"role\":\"assistant\",\"text\":\"%s\"},\"status\":\"ALTERNATIVE_STATUS_PARTIAL\"}]}}\n"
+                            .formatted(text);
+                    body.write(line.getBytes(StandardCharsets.UTF_8));
+                    body.flush();
+                    sleep(CHUNK_DELAY_MS);
+                }
+            }
+        });
+        server.start();
+
+        RestTemplate restTemplate = httpClients.pooledRestTemplate("test", Duration.ofSeconds(2), Duration.ofSeconds(5), 4,
+                new SimpleMeterRegistry());
+        service = new YandexGptService(restTemplate, restTemplate, null, Jackson2ObjectMapperBuilder.json().build(),
+                TestCallGuards.fromApplicationYaml(new SimpleMeterRegistry(), Map.of()), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "apiKey", "test-key");
+        ReflectionTestUtils.setField(service, "folderId", "test-folder");
+        ReflectionTestUtils.setField(service, "contextBudgetTokens", 1500);
+        ReflectionTestUtils.setField(service, "maxPassageTokens", 450);
+        ReflectionTestUtils.setField(service, "duplicateSimilarity", 0.8);
+        ReflectionTestUtils.setField(service, "baseUrl", "http://localhost:" + server.getAddress().getPort());
+    }
+
+    @AfterEach
+    void stopStub() {
+        httpClients.close();
+        server.stop(0);
+    }
+
+    @Test
+    void partialAnswersArriveBeforeCompletion() {
+        ChunkCard chunk = new ChunkCard(1L, "Индексы", "стр. 1", "sql.pdf", "Базы данных", "Индекс ускоряет поиск по таблице.");
+        List<String> received = new CopyOnWriteArrayList<>();
+        long[] firstPartialAt = new long[1];
+
+        long start = System.nanoTime();
+        String answer = service.answerCompleteAnswerStreaming("Зачем нужен индекс?", List.of(chunk), partial -> {
+            if (received.isEmpty()) {
+                firstPartialAt[0] = System.nanoTime();
+            }
+            received.add(partial);
+        });
+        long total = System.nanoTime() - start;
+
+        assertEquals(PARTIALS, received);
+        assertEquals(PARTIALS.get(PARTIALS.size() - 1), answer);
+        assertTrue(firstPartialAt[0] - start < total - TimeUnit.MILLISECONDS.toNanos(CHUNK_DELAY_MS),
+                "first partial should arrive well before the stream completes");
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
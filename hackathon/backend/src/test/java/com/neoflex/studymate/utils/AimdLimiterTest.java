@@ -0,0 +1,43 @@
+package com.neoflex.studymate.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AimdLimiterTest {
+
+    @Test
+    void limitGrowsOnlyWhenCallsRunAtCapacity() throws InterruptedException {
+        AimdLimiter limiter = new AimdLimiter(4, 1, 16);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.acquire(Duration.ZERO));
+            limiter.release(true);
+        }
+        assertEquals(4, limiter.limit());
+
+        for (int round = 0; round < 20; round++) {
+            int slots = limiter.limit();
+            for (int i = 0; i < slots; i++) {
+                assertTrue(limiter.acquire(Duration.ZERO));
+            }
+            for (int i = 0; i < slots; i++) {
+                limiter.release(true);
+            }
+        }
+        assertTrue(limiter.limit() > 4, "limit was " + limiter.limit());
+    }
+
+    @Test
+    void failureHalvesTheLimit() throws InterruptedException {
+        AimdLimiter limiter = new AimdLimiter(8, 2, 16);
+
+        assertTrue(limiter.acquire(Duration.ZERO));
+        limiter.release(false);
+
+        assertEquals(4, limiter.limit());
+    }
+}
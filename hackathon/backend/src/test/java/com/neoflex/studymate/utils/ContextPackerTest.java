@@ -0,0 +1,46 @@
+package com.neoflex.studymate.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContextPackerTest {
+
+    private static final String FILLER = "Этот абзац рассказывает о совсем другой теме курса и нужен только для объёма. ";
+
+    @Test
+    void staysWithinBudgetWhateverThePassageSizes() {
+        ContextPacker packer = new ContextPacker(300, 120, 0.8);
+        List<ContextPacker.Passage> passages = List.of(
+                new ContextPacker.Passage("Большой", FILLER.repeat(200) + "Индекс ускоряет поиск строк в таблице."),
+                new ContextPacker.Passage("Без знаков", "слово ".repeat(5000)),
+                new ContextPacker.Passage("Ещё один", FILLER.repeat(50)));
+
+        ContextPacker.Packed packed = packer.pack("Зачем нужен индекс в таблице?", passages);
+
+        assertTrue(packed.tokens() <= 300);
+        assertTrue(ContextPacker.estimateTokens(packed.context()) <= 300);
+        assertTrue(packed.context().contains("Индекс ускоряет поиск строк в таблице."));
+    }
+
+    @Test
+    void skipsNearDuplicatesOfBetterPassages() {
+        ContextPacker packer = new ContextPacker(1000, 400, 0.8);
+        String text = "Транзакция переводит базу данных из одного согласованного состояния в другое. "
+                + "Уровень изоляции определяет, какие аномалии допустимы при параллельной работе.";
+        List<ContextPacker.Passage> passages = List.of(
+                new ContextPacker.Passage("Транзакции", text),
+                new ContextPacker.Passage("Копия", text + " Подробнее в следующем разделе."),
+                new ContextPacker.Passage("Индексы", "Индекс ускоряет поиск строк в таблице."));
+
+        ContextPacker.Packed packed = packer.pack("что такое транзакция", passages);
+
+        assertEquals(2, packed.passages());
+        assertEquals(1, packed.duplicates());
+        assertFalse(packed.context().contains("Копия"));
+    }
+}
@@ -0,0 +1,70 @@
+package com.neoflex.studymate.utils;
+
+import jdk.incubator.vector.VectorShape;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class VectorMathTest {
+
+    @Test
+    void kernelsMatchScalarLoops() {
+        Random random = new Random(5);
+        for (int length : new int[]{1, 7, 64, 256, 259}) {
+            float[] a = randomFloats(random, length + 3);
+            float[] b = randomFloats(random, length + 5);
+            byte[] codesA = randomBytes(random, length + 2);
+            byte[] codesB = randomBytes(random, length + 4);
+
+            assertEquals(VectorMath.scalarDot(a, 3, b, 5, length), VectorMath.dot(a, 3, b, 5, length), 1e-3);
+            assertEquals(VectorMath.scalarDot(a, codesA, 2, length), VectorMath.dot(a, codesA, 2, length), 1e-1);
+            assertEquals(VectorMath.scalarDot(codesA, 2, codesB, 4, length), VectorMath.dot(codesA, 2, codesB, 4, length));
+        }
+    }
+
+    @Test
+    void simdKernelsMatchScalarLoopsForEveryShape() {
+        Random random = new Random(6);
+        for (VectorShape shape : List.of(VectorShape.S_64_BIT, VectorShape.S_128_BIT, VectorShape.S_256_BIT,
+                VectorShape.S_512_BIT)) {
+            SimdKernels kernels = SimdKernels.forShape(shape);
+            for (int length : new int[]{1, 7, 64, 256, 259}) {
+                float[] a = randomFloats(random, length + 3);
+                float[] b = randomFloats(random, length + 5);
+                byte[] codesA = randomBytes(random, length + 2);
+                byte[] codesB = randomBytes(random, length + 4);
+
+                assertEquals(VectorMath.scalarDot(a, 3, b, 5, length), kernels.dot(a, 3, b, 5, length), 1e-3, shape.name());
+                assertEquals(VectorMath.scalarDot(a, codesA, 2, length), kernels.dot(a, codesA, 2, length), 1e-1, shape.name());
+                assertEquals(VectorMath.scalarDot(codesA, 2, codesB, 4, length), kernels.dot(codesA, 2, codesB, 4, length),
+                        shape.name());
+            }
+        }
+    }
+
+    @Test
+    void normalizeProducesUnitVectors() {
+        float[] normalized = VectorMath.normalize(new float[]{3, 4});
+
+        assertEquals(0.6f, normalized[0], 1e-6);
+        assertEquals(0.8f, normalized[1], 1e-6);
+        assertEquals(1f, VectorMath.dot(normalized, normalized), 1e-6);
+    }
+
+    private static float[] randomFloats(Random random, int length) {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = (float) random.nextGaussian();
+        }
+        return values;
+    }
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] values = new byte[length];
+        random.nextBytes(values);
+        return values;
+    }
+}